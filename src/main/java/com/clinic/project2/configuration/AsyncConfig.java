@@ -1,27 +1,25 @@
 package com.clinic.project2.configuration;
 
 
+import com.clinic.project2.service.EmailDeliveryExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-
-import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
-public class AsyncConfig implements AsyncConfigurer {
+public class AsyncConfig {
 
 
-    @Override
-    public Executor getAsyncExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(50);
-        executor.setQueueCapacity(500);
-        executor.setThreadNamePrefix("Async-");
-        executor.initialize();
-        return executor;
+    @Bean(destroyMethod = "shutdown")
+    public EmailDeliveryExecutor emailDeliveryExecutor(
+            @Value("${email.delivery.executor-mode:platform}") String mode,
+            @Value("${email.outbox.workers:4}") int threads,
+            @Value("${email.delivery.queue-capacity:100}") int queueCapacity,
+            @Value("${email.delivery.max-concurrency:4}") int maxConcurrency,
+            @Value("${email.delivery.permit-timeout-ms:30000}") long permitTimeoutMs) {
+        return new EmailDeliveryExecutor(EmailDeliveryExecutor.Mode.parse(mode),
+                threads, queueCapacity, maxConcurrency, permitTimeoutMs);
     }
 }
@@ -4,7 +4,9 @@ package com.clinic.project2.controller;
 import com.clinic.project2.model.command.CreateClientCommand;
 import com.clinic.project2.model.command.CreateSubscriptionCommand;
 import com.clinic.project2.model.command.RemoveSubscriptionCommand;
+import com.clinic.project2.model.command.SubscriptionBatchCommand;
 import com.clinic.project2.model.dto.ClientDto;
+import com.clinic.project2.model.dto.SubscriptionBatchResultDto;
 import com.clinic.project2.service.ClientService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -44,4 +46,10 @@ public class ClientController {
     public ClientDto removeSubscription(@PathVariable @Valid Long id, @RequestBody RemoveSubscriptionCommand command) {
         return clientService.removeFilmSubscription(id, command);
     }
+
+
+    @PutMapping("/subscriptions")
+    public SubscriptionBatchResultDto applySubscriptionChanges(@RequestBody @Valid SubscriptionBatchCommand command) {
+        return clientService.applySubscriptionChanges(command);
+    }
 }
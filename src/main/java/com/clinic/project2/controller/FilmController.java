@@ -1,17 +1,24 @@
 package com.clinic.project2.controller;
 
 
-import com.clinic.project2.model.Film;
 import com.clinic.project2.model.command.CreateFilmCommand;
 import com.clinic.project2.model.dto.FilmDto;
+import com.clinic.project2.model.dto.FilmImportReportDto;
+import com.clinic.project2.model.dto.FilmPageDto;
+import com.clinic.project2.service.FilmImportService;
 import com.clinic.project2.service.FilmService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import lombok.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 @RestController
 @RequiredArgsConstructor
@@ -19,6 +26,8 @@ import java.util.List;
 public class FilmController {
 
     private final FilmService filmService;
+    private final FilmImportService filmImportService;
+    private final ObjectMapper objectMapper;
 
 
     @PostMapping
@@ -27,8 +36,37 @@ public class FilmController {
         return filmService.save(command);
     }
 
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public FilmImportReportDto importCsv(HttpServletRequest request) throws IOException {
+        return filmImportService.importCsv(request.getReader());
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public FilmImportReportDto importNdjson(HttpServletRequest request) throws IOException {
+        return filmImportService.importNdjson(request.getReader());
+    }
+
     @GetMapping
-    public List<FilmDto> findAll() {
-        return filmService.findAll();
+    public FilmPageDto findAll(@RequestParam(defaultValue = "0") Long after,
+                               @RequestParam(defaultValue = "50") int limit,
+                               @RequestParam(required = false) String director,
+                               @RequestParam(required = false) String category) {
+        return filmService.findPage(after, limit, director, category);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll(@RequestParam(required = false) String director,
+                                                           @RequestParam(required = false) String category) {
+        StreamingResponseBody body = out -> filmService.streamAll(director, category, film -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(film));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 }
@@ -0,0 +1,26 @@
+package com.clinic.project2.controller;
+
+
+import com.clinic.project2.model.dto.JobProgressDto;
+import com.clinic.project2.service.JobShardService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/admin/jobs")
+public class JobAdminController {
+
+    private final JobShardService jobShardService;
+
+
+    @GetMapping("/{jobName}/progress")
+    public JobProgressDto progress(@PathVariable String jobName,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                   LocalDate runDate) {
+        return jobShardService.progress(jobName, runDate != null ? runDate : LocalDate.now());
+    }
+}
@@ -4,6 +4,8 @@ import com.clinic.project2.model.Film;
 import com.clinic.project2.model.command.CreateFilmCommand;
 import com.clinic.project2.model.dto.FilmDto;
 
+import java.time.LocalDate;
+
 public class FilmMapper {
 
 
@@ -12,11 +14,13 @@ public class FilmMapper {
                 .director(command.getDirector())
                 .title(command.getTitle())
                 .category(command.getCategory())
+                .createdDate(LocalDate.now())
                 .build();
     }
 
     public static FilmDto mapToDto(Film film) {
         return FilmDto.builder()
+                .id(film.getId())
                 .director(film.getDirector())
                 .title(film.getTitle())
                 .category(film.getCategory())
@@ -5,17 +5,23 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 
 import java.util.Set;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = Client.MAIL_CONSTRAINT, columnNames = "mail"))
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 @Data
 public class Client {
 
+    public static final String MAIL_CONSTRAINT = "uk_client_mail";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -30,15 +36,25 @@ public class Client {
 
     private boolean active;
 
-    private String verificationToken;
-
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "subscription_director", joinColumns = @JoinColumn(name = "client_id"))
+    @ElementCollection
+    @BatchSize(size = 100)
+    @CollectionTable(name = "subscription_director", joinColumns = @JoinColumn(name = "client_id"),
+            uniqueConstraints = @UniqueConstraint(name = "uk_subscription_director",
+                    columnNames = {"client_id", "director"}),
+            indexes = @Index(name = "idx_subscription_director_director", columnList = "director, client_id"))
     @Column(name = "director")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Set<String> subscriptionDirector;
 
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "subscription_category", joinColumns = @JoinColumn(name = "client_id"))
+    @ElementCollection
+    @BatchSize(size = 100)
+    @CollectionTable(name = "subscription_category", joinColumns = @JoinColumn(name = "client_id"),
+            uniqueConstraints = @UniqueConstraint(name = "uk_subscription_category",
+                    columnNames = {"client_id", "category"}),
+            indexes = @Index(name = "idx_subscription_category_category", columnList = "category, client_id"))
     @Column(name = "category")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Set<String> subscriptionCategory;
 }
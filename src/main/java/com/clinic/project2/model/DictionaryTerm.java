@@ -0,0 +1,28 @@
+package com.clinic.project2.model;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "term_dictionary", uniqueConstraints = @UniqueConstraint(name = "uk_term_dictionary_kind_name",
+        columnNames = {"kind", "name"}))
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class DictionaryTerm {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private TermKind kind;
+
+    private String name;
+}
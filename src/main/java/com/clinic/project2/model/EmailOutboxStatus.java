@@ -0,0 +1,8 @@
+package com.clinic.project2.model;
+
+public enum EmailOutboxStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
@@ -5,6 +5,9 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,15 +16,27 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDate;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_film_director", columnList = "director"),
+        @Index(name = "idx_film_category", columnList = "category")
+})
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 @Builder
 public class Film {
 
+    public static final String ID_SEQUENCE = "film_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
 
+    /**
+     * Taken from {@code film_seq} in blocks of {@link #ID_ALLOCATION_SIZE} per node, so ids are unique but not
+     * monotonic across nodes: a film saved later on one node can get a lower id than a film saved earlier on
+     * another. Use {@code createdDate}, not the id, to tell what was added when.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     private String director;
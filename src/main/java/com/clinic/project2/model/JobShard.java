@@ -0,0 +1,61 @@
+package com.clinic.project2.model;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "job_shard", uniqueConstraints = @UniqueConstraint(name = "uk_job_shard_run_index",
+        columnNames = {"jobName", "runDate", "shardIndex"}))
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class JobShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 64)
+    private String jobName;
+
+    private LocalDate runDate;
+
+    private int shardIndex;
+
+    private long rangeAfter;
+
+    private long rangeUpTo;
+
+    @Column(columnDefinition = "TEXT")
+    private String runFilmIds;
+
+    @Enumerated(EnumType.STRING)
+    private JobShardStatus status;
+
+    @Column(length = 64)
+    private String owner;
+
+    private LocalDateTime leaseUntil;
+
+    @Column(columnDefinition = "TEXT")
+    private String notifiedFilmIds;
+
+    @Column(columnDefinition = "TEXT")
+    private String pendingRanges;
+
+    private long scannedClients;
+
+    private long notifiedClients;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime checkpointAt;
+}
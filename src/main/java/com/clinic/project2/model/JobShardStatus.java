@@ -0,0 +1,5 @@
+package com.clinic.project2.model;
+
+public enum JobShardStatus {
+    PENDING, RUNNING, DONE
+}
@@ -0,0 +1,33 @@
+package com.clinic.project2.model;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "notification_delivery", uniqueConstraints = @UniqueConstraint(
+        name = "uk_notification_delivery_client_film", columnNames = {"clientId", "filmId"}),
+        indexes = @Index(name = "idx_notification_delivery_sent_at", columnList = "sentAt"))
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class NotificationDelivery {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long clientId;
+
+    @Column(nullable = false)
+    private Long filmId;
+
+    private LocalDateTime sentAt;
+}
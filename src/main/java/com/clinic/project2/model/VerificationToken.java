@@ -0,0 +1,33 @@
+package com.clinic.project2.model;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "verification_token", indexes = {
+        @Index(name = "uk_verification_token_hash", columnList = "tokenHash", unique = true),
+        @Index(name = "idx_verification_token_expires_at", columnList = "expiresAt")
+})
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class VerificationToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 64, nullable = false)
+    private String tokenHash;
+
+    private Long clientId;
+
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,23 @@
+package com.clinic.project2.model.command;
+
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriptionBatchCommand {
+
+    @NotEmpty(message = "Changes cannot be empty")
+    @Size(max = 1000, message = "At most 1000 changes per request")
+    private List<@Valid SubscriptionChangeCommand> changes;
+}
@@ -0,0 +1,21 @@
+package com.clinic.project2.model.command;
+
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Set;
+
+@Data
+@Builder
+public class SubscriptionChangeCommand {
+
+    @NotNull(message = "Client id cannot be null")
+    private Long clientId;
+
+    private Set<String> addDirectors;
+    private Set<String> addCategories;
+    private Set<String> removeDirectors;
+    private Set<String> removeCategories;
+}
@@ -0,0 +1,15 @@
+package com.clinic.project2.model.dto;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+@AllArgsConstructor
+public class ClientContactDto {
+
+    private Long id;
+    private String mail;
+}
@@ -1,13 +1,16 @@
 package com.clinic.project2.model.dto;
 
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 
 @Getter
 @Builder
+@AllArgsConstructor
 public class FilmDto {
 
+    private Long id;
     private String director;
     private String title;
     private String category;
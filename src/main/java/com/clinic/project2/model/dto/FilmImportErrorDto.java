@@ -0,0 +1,13 @@
+package com.clinic.project2.model.dto;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class FilmImportErrorDto {
+
+    private long row;
+    private String message;
+}
@@ -0,0 +1,16 @@
+package com.clinic.project2.model.dto;
+
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+public class FilmPageDto {
+
+    private List<FilmDto> films;
+    private Long nextCursor;
+    private long catalogVersion;
+}
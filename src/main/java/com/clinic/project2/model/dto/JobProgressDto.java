@@ -0,0 +1,27 @@
+package com.clinic.project2.model.dto;
+
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Getter
+@Builder
+public class JobProgressDto {
+
+    private String jobName;
+    private LocalDate runDate;
+    private String status;
+    private int shards;
+    private int doneShards;
+    private int runningShards;
+    private long scannedClients;
+    private long notifiedClients;
+    private double progress;
+    private LocalDateTime startedAt;
+    private LocalDateTime lastCheckpointAt;
+    private Long remainingSeconds;
+    private LocalDateTime estimatedCompletion;
+}
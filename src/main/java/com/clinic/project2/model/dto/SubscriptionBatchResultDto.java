@@ -0,0 +1,15 @@
+package com.clinic.project2.model.dto;
+
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+public class SubscriptionBatchResultDto {
+
+    private int applied;
+    private List<Long> unknownClientIds;
+}
@@ -0,0 +1,8 @@
+package com.clinic.project2.model.event;
+
+
+/**
+ * Published by {@link com.clinic.project2.service.FilmService} when a film was saved.
+ */
+public record FilmCreatedEvent(Long filmId) {
+}
@@ -0,0 +1,11 @@
+package com.clinic.project2.model.event;
+
+
+import java.util.List;
+
+/**
+ * Published by {@link com.clinic.project2.service.FilmService} once per import batch, carrying the ids of the films
+ * the batch inserted.
+ */
+public record FilmsImportedEvent(List<Long> filmIds) {
+}
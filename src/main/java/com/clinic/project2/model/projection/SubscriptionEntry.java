@@ -0,0 +1,8 @@
+package com.clinic.project2.model.projection;
+
+public interface SubscriptionEntry {
+
+    Long getClientId();
+
+    Integer getTermId();
+}
@@ -1,17 +1,91 @@
 package com.clinic.project2.repository;
 
 import com.clinic.project2.model.Client;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import com.clinic.project2.model.dto.ClientContactDto;
+import com.clinic.project2.model.projection.SubscriptionEntry;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface ClientRepository extends JpaRepository<Client, Long> {
 
     Client findByMail(String mail);
 
-    Client findByVerificationToken(String verificationToken);
+    boolean existsByMail(String mail);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT c.mail FROM Client c WHERE c.mail IS NOT NULL")
+    Stream<String> streamAllMails();
+
+    @Query("SELECT new com.clinic.project2.model.dto.ClientContactDto(c.id, c.mail) FROM Client c " +
+            "WHERE c.active = true AND c.id > :lastId AND c.id <= :upperId ORDER BY c.id")
+    List<ClientContactDto> findActiveClientsInRange(@Param("lastId") Long lastId, @Param("upperId") Long upperId,
+                                                    Limit limit);
+
+    @Query("SELECT new com.clinic.project2.model.dto.ClientContactDto(c.id, c.mail) FROM Client c " +
+            "WHERE c.active = true AND c.id IN :ids ORDER BY c.id")
+    List<ClientContactDto> findActiveClientsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "(SELECT client_id FROM subscription_director WHERE director = :director " +
+            "AND client_id > :lastId ORDER BY client_id LIMIT :limit) UNION " +
+            "(SELECT client_id FROM subscription_category WHERE category = :category " +
+            "AND client_id > :lastId ORDER BY client_id LIMIT :limit) ORDER BY client_id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findSubscriberIds(@Param("director") String director, @Param("category") String category,
+                                 @Param("lastId") Long lastId, @Param("limit") int limit);
+
+    @Query("SELECT MAX(c.id) FROM Client c WHERE c.active = true")
+    Long findMaxActiveId();
+
+    @Query("SELECT c.id FROM Client c WHERE c.active = false AND c.id IN :ids")
+    List<Long> findInactiveIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT c.id FROM Client c WHERE c.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO subscription_director (client_id, director) VALUES (:clientId, :director)",
+            nativeQuery = true)
+    int insertDirectorSubscription(@Param("clientId") Long clientId, @Param("director") String director);
+
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO subscription_category (client_id, category) VALUES (:clientId, :category)",
+            nativeQuery = true)
+    int insertCategorySubscription(@Param("clientId") Long clientId, @Param("category") String category);
+
+    @Modifying
+    @Query(value = "DELETE FROM subscription_director WHERE client_id = :clientId AND director IN :directors",
+            nativeQuery = true)
+    int removeDirectorSubscriptions(@Param("clientId") Long clientId, @Param("directors") Collection<String> directors);
+
+    @Modifying
+    @Query(value = "DELETE FROM subscription_category WHERE client_id = :clientId AND category IN :categories",
+            nativeQuery = true)
+    int removeCategorySubscriptions(@Param("clientId") Long clientId,
+                                    @Param("categories") Collection<String> categories);
+
+    @Modifying
+    @Query(value = "DELETE FROM subscription_director WHERE client_id IN :ids", nativeQuery = true)
+    int deleteDirectorSubscriptions(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM subscription_category WHERE client_id IN :ids", nativeQuery = true)
+    int deleteCategorySubscriptions(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "SELECT s.client_id AS clientId, t.id AS termId FROM subscription_director s " +
+            "JOIN term_dictionary t ON t.kind = 'DIRECTOR' AND t.name = s.director", nativeQuery = true)
+    List<SubscriptionEntry> findAllDirectorSubscriptions();
 
-    @Query("SELECT c FROM Client c WHERE c.active = true")
-    Page<Client> findAllActiveClients(Pageable pageable);
+    @Query(value = "SELECT s.client_id AS clientId, t.id AS termId FROM subscription_category s " +
+            "JOIN term_dictionary t ON t.kind = 'CATEGORY' AND t.name = s.category", nativeQuery = true)
+    List<SubscriptionEntry> findAllCategorySubscriptions();
 }
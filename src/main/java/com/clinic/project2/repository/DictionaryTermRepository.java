@@ -0,0 +1,41 @@
+package com.clinic.project2.repository;
+
+import com.clinic.project2.model.DictionaryTerm;
+import com.clinic.project2.model.TermKind;
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface DictionaryTermRepository extends JpaRepository<DictionaryTerm, Integer> {
+
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Transactional
+    Optional<DictionaryTerm> findByKindAndName(TermKind kind, String name);
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO term_dictionary (kind, name) VALUES (:kind, :name)", nativeQuery = true)
+    int insertIgnore(@Param("kind") String kind, @Param("name") String name);
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO term_dictionary (kind, name) SELECT DISTINCT 'DIRECTOR', t.director FROM " +
+            "(SELECT director FROM film UNION SELECT director FROM subscription_director) t " +
+            "WHERE t.director IS NOT NULL AND NOT EXISTS " +
+            "(SELECT 1 FROM term_dictionary d WHERE d.kind = 'DIRECTOR' AND d.name = t.director)", nativeQuery = true)
+    int importDirectors();
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO term_dictionary (kind, name) SELECT DISTINCT 'CATEGORY', t.category FROM " +
+            "(SELECT category FROM film UNION SELECT category FROM subscription_category) t " +
+            "WHERE t.category IS NOT NULL AND NOT EXISTS " +
+            "(SELECT 1 FROM term_dictionary d WHERE d.kind = 'CATEGORY' AND d.name = t.category)", nativeQuery = true)
+    int importCategories();
+}
@@ -0,0 +1,34 @@
+package com.clinic.project2.repository;
+
+import com.clinic.project2.model.EmailOutbox;
+import com.clinic.project2.model.EmailOutboxStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    @Query(value = "SELECT * FROM email_outbox WHERE status IN ('PENDING', 'SENDING') AND next_attempt_at <= :now " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<EmailOutbox> findDueForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    long countByStatusIn(Collection<EmailOutboxStatus> statuses);
+
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :status, e.sentAt = :sentAt, e.lastError = null WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("status") EmailOutboxStatus status, @Param("sentAt") LocalDateTime sentAt);
+
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.status IN :statuses AND e.createdAt < :createdBefore ORDER BY e.id")
+    List<Long> findIdsCreatedBefore(@Param("statuses") Collection<EmailOutboxStatus> statuses,
+                                    @Param("createdBefore") LocalDateTime createdBefore, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM EmailOutbox e WHERE e.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
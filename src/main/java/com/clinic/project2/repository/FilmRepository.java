@@ -1,16 +1,42 @@
 package com.clinic.project2.repository;
 
 import com.clinic.project2.model.Film;
+import com.clinic.project2.model.dto.FilmDto;
+import jakarta.persistence.QueryHint;
+import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface FilmRepository extends JpaRepository<Film, Long> {
 
 
     @Query("SELECT b FROM Film b where b.processedDate IS NULL AND b.createdDate >= :cutoffDate")
     List<Film> findUnprocessedBooksAddedRecently(@Param("cutoffDate")LocalDate cutoffDate);
+
+    @Query("SELECT new com.clinic.project2.model.dto.FilmDto(f.id, f.director, f.title, f.category) FROM Film f " +
+            "WHERE f.id > :after AND (:director IS NULL OR f.director = :director) " +
+            "AND (:category IS NULL OR f.category = :category) ORDER BY f.id")
+    List<FilmDto> findPage(@Param("after") Long after, @Param("director") String director,
+                           @Param("category") String category, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.clinic.project2.model.dto.FilmDto(f.id, f.director, f.title, f.category) FROM Film f " +
+            "WHERE (:director IS NULL OR f.director = :director) " +
+            "AND (:category IS NULL OR f.category = :category) ORDER BY f.id")
+    Stream<FilmDto> streamAll(@Param("director") String director, @Param("category") String category);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Film f SET f.processedDate = :processedDate WHERE f.id IN :ids")
+    int markProcessed(@Param("ids") Collection<Long> ids, @Param("processedDate") LocalDate processedDate);
 }
@@ -0,0 +1,63 @@
+package com.clinic.project2.repository;
+
+import com.clinic.project2.model.JobShard;
+import com.clinic.project2.model.JobShardStatus;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface JobShardRepository extends JpaRepository<JobShard, Long> {
+
+    boolean existsByJobNameAndRunDate(String jobName, LocalDate runDate);
+
+    @Query(value = "SELECT * FROM job_shard WHERE job_name = :jobName AND run_date = :runDate " +
+            "AND (status = 'PENDING' OR (status = 'RUNNING' AND lease_until < :now)) " +
+            "ORDER BY shard_index LIMIT 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<JobShard> findClaimableForUpdate(@Param("jobName") String jobName, @Param("runDate") LocalDate runDate,
+                                              @Param("now") LocalDateTime now);
+
+    @Query("SELECT DISTINCT s.runDate FROM JobShard s WHERE s.jobName = :jobName AND s.runDate < :before " +
+            "AND (s.status = :pending OR (s.status = :running AND s.leaseUntil < :now)) ORDER BY s.runDate")
+    List<LocalDate> findClaimableRunDates(@Param("jobName") String jobName, @Param("before") LocalDate before,
+                                          @Param("now") LocalDateTime now,
+                                          @Param("pending") JobShardStatus pending,
+                                          @Param("running") JobShardStatus running);
+
+    @Query(value = "SELECT * FROM job_shard WHERE job_name = :jobName AND run_date = :runDate " +
+            "ORDER BY shard_index FOR UPDATE", nativeQuery = true)
+    List<JobShard> lockRun(@Param("jobName") String jobName, @Param("runDate") LocalDate runDate);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobShard s SET s.leaseUntil = :leaseUntil " +
+            "WHERE s.id = :id AND s.owner = :owner AND s.status = :status")
+    int renew(@Param("id") Long id, @Param("owner") String owner, @Param("status") JobShardStatus status,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobShard s SET s.pendingRanges = :pendingRanges, s.notifiedFilmIds = :notifiedFilmIds, " +
+            "s.scannedClients = :scannedClients, " +
+            "s.notifiedClients = :notifiedClients, s.checkpointAt = :checkpointAt " +
+            "WHERE s.id = :id AND s.owner = :owner AND s.status = :status")
+    int checkpoint(@Param("id") Long id, @Param("owner") String owner, @Param("status") JobShardStatus status,
+                   @Param("pendingRanges") String pendingRanges, @Param("notifiedFilmIds") String notifiedFilmIds,
+                   @Param("scannedClients") long scannedClients, @Param("notifiedClients") long notifiedClients,
+                   @Param("checkpointAt") LocalDateTime checkpointAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobShard s SET s.status = :released, s.owner = null, s.leaseUntil = null " +
+            "WHERE s.id = :id AND s.owner = :owner AND s.status = :status")
+    int release(@Param("id") Long id, @Param("owner") String owner, @Param("status") JobShardStatus status,
+                @Param("released") JobShardStatus released);
+
+    List<JobShard> findByJobNameAndRunDateOrderByShardIndex(String jobName, LocalDate runDate);
+}
@@ -0,0 +1,12 @@
+package com.clinic.project2.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface NotificationDeliveryBatchRepository {
+
+    /**
+     * Inserts one ledger row per {@code [clientId, filmId]} pair as a single JDBC batch.
+     */
+    void insertAll(Collection<long[]> clientFilmPairs, LocalDateTime sentAt);
+}
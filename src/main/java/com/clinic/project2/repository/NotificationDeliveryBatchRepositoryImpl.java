@@ -0,0 +1,30 @@
+package com.clinic.project2.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes ledger rows through JDBC, as Hibernate does not batch inserts of entities with an identity id.
+ */
+@RequiredArgsConstructor
+public class NotificationDeliveryBatchRepositoryImpl implements NotificationDeliveryBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(Collection<long[]> clientFilmPairs, LocalDateTime sentAt) {
+        if (clientFilmPairs.isEmpty()) {
+            return;
+        }
+        Timestamp timestamp = Timestamp.valueOf(sentAt);
+        List<Object[]> rows = clientFilmPairs.stream()
+                .map(pair -> new Object[]{pair[0], pair[1], timestamp})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO notification_delivery (client_id, film_id, sent_at) VALUES (?, ?, ?)", rows);
+    }
+}
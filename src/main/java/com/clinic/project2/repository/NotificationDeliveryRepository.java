@@ -0,0 +1,25 @@
+package com.clinic.project2.repository;
+
+import com.clinic.project2.model.NotificationDelivery;
+import com.clinic.project2.model.projection.DeliveredPair;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface NotificationDeliveryRepository extends JpaRepository<NotificationDelivery, Long>,
+        NotificationDeliveryBatchRepository {
+
+    @Query("SELECT d.clientId AS clientId, d.filmId AS filmId FROM NotificationDelivery d " +
+            "WHERE d.clientId IN :clientIds AND d.filmId IN :filmIds")
+    List<DeliveredPair> findDelivered(@Param("clientIds") Collection<Long> clientIds,
+                                      @Param("filmIds") Collection<Long> filmIds);
+
+    @Modifying
+    @Query("DELETE FROM NotificationDelivery d WHERE d.sentAt < :sentBefore")
+    int deleteSentBefore(@Param("sentBefore") LocalDateTime sentBefore);
+}
@@ -0,0 +1,29 @@
+package com.clinic.project2.repository;
+
+import com.clinic.project2.model.VerificationToken;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface VerificationTokenRepository extends JpaRepository<VerificationToken, Long> {
+
+    Optional<VerificationToken> findByTokenHash(String tokenHash);
+
+    @Modifying
+    @Query("DELETE FROM VerificationToken t WHERE t.tokenHash = :tokenHash")
+    int deleteByTokenHash(@Param("tokenHash") String tokenHash);
+
+    @Query("SELECT t FROM VerificationToken t WHERE t.expiresAt <= :now ORDER BY t.expiresAt")
+    List<VerificationToken> findExpired(@Param("now") LocalDateTime now, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM VerificationToken t WHERE t.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -8,12 +8,23 @@ import com.clinic.project2.model.Client;
 import com.clinic.project2.model.command.CreateClientCommand;
 import com.clinic.project2.model.command.CreateSubscriptionCommand;
 import com.clinic.project2.model.command.RemoveSubscriptionCommand;
+import com.clinic.project2.model.command.SubscriptionBatchCommand;
+import com.clinic.project2.model.command.SubscriptionChangeCommand;
 import com.clinic.project2.model.dto.ClientDto;
+import com.clinic.project2.model.dto.SubscriptionBatchResultDto;
 import com.clinic.project2.repository.ClientRepository;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import static com.clinic.project2.mapper.ClientMapper.mapToDto;
 
@@ -22,60 +33,122 @@ import static com.clinic.project2.mapper.ClientMapper.mapToDto;
 @RequiredArgsConstructor
 public class ClientService {
 
+    private static final String EMAIL_ALREADY_USED = "An account with this email address already exists.";
+
     private final ClientRepository clientRepository;
     private final EmailService emailService;
+    private final SubscriptionIndex subscriptionIndex;
+    private final RegisteredMailFilter registeredMailFilter;
+    private final VerificationTokenService verificationTokenService;
 
+    @Transactional
     public ClientDto addClient(CreateClientCommand command) {
-        if (clientRepository.findByMail(command.getMail()) != null) {
-            throw new EmailAlreadyUsedException("An account with this email address already exists.");
+        if (registeredMailFilter.mightContain(command.getMail()) && clientRepository.existsByMail(command.getMail())) {
+            throw new EmailAlreadyUsedException(EMAIL_ALREADY_USED);
         }
         Client toSave = ClientMapper.mapFromCommand(command);
-        toSave.setVerificationToken(UUID.randomUUID().toString());
-        emailService.sendEmailValidationRequest(toSave);
-        Client savedClient = clientRepository.save(toSave);
+        Client savedClient;
+        try {
+            savedClient = clientRepository.saveAndFlush(toSave);
+        } catch (DataIntegrityViolationException e) {
+            if (violatesMailConstraint(e)) {
+                throw new EmailAlreadyUsedException(EMAIL_ALREADY_USED);
+            }
+            throw e;
+        }
+        registeredMailFilter.put(command.getMail());
+        String token = verificationTokenService.issue(savedClient.getId());
+        emailService.sendEmailValidationRequest(toSave, token);
         return mapToDto(savedClient);
     }
 
+    @Transactional
     public String confirmRegistration(String token) {
-        Client client = clientRepository.findByVerificationToken(token);
-        if (client == null) {
-            throw new ClientNotFoundException("Invalid token");
-        }
+        Client client = verificationTokenService.consume(token)
+                .flatMap(clientRepository::findById)
+                .orElseThrow(() -> new ClientNotFoundException("Invalid token"));
         client.setActive(true);
-        client.setVerificationToken(null);
         clientRepository.save(client);
         return "Your account has been successfully verified!";
     }
 
+    /**
+     * Adds subscriptions with one idempotent insert per term, so the rest of the client's subscriptions is never
+     * rewritten and concurrent updates of one client do not overwrite each other.
+     */
+    @Transactional
     public ClientDto addFilmSubscription(Long id, CreateSubscriptionCommand command) {
-        Client client = clientRepository.findById(id)
-                .orElseThrow(() -> new ClientNotFoundException(
-                        String.format("Client with id %d not found", id)));
+        Client client = findClient(id);
+        addSubscriptions(id, command.getDirectors(), command.getCategories());
+        return mapToDto(client);
+    }
 
-        if (command.getDirectors() != null) {
-            client.getSubscriptionDirector().addAll(command.getDirectors());
-        }
-        if (command.getCategories() != null) {
-            client.getSubscriptionCategory().addAll(command.getCategories());
+    @Transactional
+    public ClientDto removeFilmSubscription(Long id, RemoveSubscriptionCommand command) {
+        Client client = findClient(id);
+        removeSubscriptions(id, command.getDirectors(), command.getCategories());
+        return mapToDto(client);
+    }
+
+    /**
+     * Applies the subscription changes of many clients in one transaction, removals before additions. Changes for
+     * clients that do not exist are skipped and reported.
+     */
+    @Transactional
+    public SubscriptionBatchResultDto applySubscriptionChanges(SubscriptionBatchCommand command) {
+        Set<Long> existingIds = new HashSet<>(clientRepository.findExistingIds(command.getChanges().stream()
+                .map(SubscriptionChangeCommand::getClientId)
+                .collect(Collectors.toSet())));
+        int applied = 0;
+        Set<Long> unknownClientIds = new TreeSet<>();
+        for (SubscriptionChangeCommand change : command.getChanges()) {
+            if (!existingIds.contains(change.getClientId())) {
+                unknownClientIds.add(change.getClientId());
+                continue;
+            }
+            removeSubscriptions(change.getClientId(), change.getRemoveDirectors(), change.getRemoveCategories());
+            addSubscriptions(change.getClientId(), change.getAddDirectors(), change.getAddCategories());
+            applied++;
         }
+        return SubscriptionBatchResultDto.builder()
+                .applied(applied)
+                .unknownClientIds(new ArrayList<>(unknownClientIds))
+                .build();
+    }
 
-        Client updatedClient = clientRepository.save(client);
-        return mapToDto(updatedClient);
+    private static boolean violatesMailConstraint(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                String constraint = violation.getConstraintName();
+                return constraint != null && constraint.toLowerCase(Locale.ROOT).contains(Client.MAIL_CONSTRAINT);
+            }
+        }
+        return false;
     }
 
-    public ClientDto removeFilmSubscription(Long id, RemoveSubscriptionCommand command) {
-        Client client = clientRepository.findById(id)
+    private Client findClient(Long id) {
+        return clientRepository.findById(id)
                 .orElseThrow(() -> new ClientNotFoundException(
                         String.format("Client with id %d not found", id)));
+    }
 
-        if (command.getDirectors() != null) {
-            client.getSubscriptionDirector().removeAll(command.getDirectors());
+    private void addSubscriptions(Long id, Set<String> directors, Set<String> categories) {
+        if (directors != null) {
+            directors.forEach(director -> clientRepository.insertDirectorSubscription(id, director));
         }
-        if (command.getCategories() != null) {
-            client.getSubscriptionCategory().removeAll(command.getCategories());
+        if (categories != null) {
+            categories.forEach(category -> clientRepository.insertCategorySubscription(id, category));
         }
+        subscriptionIndex.subscribe(id, directors, categories);
+    }
 
-        Client updatedClient = clientRepository.save(client);
-        return mapToDto(updatedClient);
+    private void removeSubscriptions(Long id, Set<String> directors, Set<String> categories) {
+        if (directors != null && !directors.isEmpty()) {
+            clientRepository.removeDirectorSubscriptions(id, directors);
+        }
+        if (categories != null && !categories.isEmpty()) {
+            clientRepository.removeCategorySubscriptions(id, categories);
+        }
+        subscriptionIndex.unsubscribe(id, directors, categories);
     }
-}
\ No newline at end of file
+}
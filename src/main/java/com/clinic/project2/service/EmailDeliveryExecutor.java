@@ -0,0 +1,155 @@
+package com.clinic.project2.service;
+
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Runs email delivery work either on a fixed pool of platform threads or on one virtual thread per task. In both
+ * modes a semaphore caps how many tasks talk to SMTP at once; a task that cannot get a permit in time is rejected.
+ */
+@Slf4j
+public class EmailDeliveryExecutor implements MeterBinder {
+
+    private static final int VIRTUAL_THREADS_SINCE = 21;
+
+    public enum Mode {
+        PLATFORM, VIRTUAL;
+
+        /**
+         * Parses the {@code email.delivery.executor-mode} property case-insensitively, independent of the default
+         * locale.
+         */
+        public static Mode parse(String value) {
+            String normalized = value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+            for (Mode candidate : values()) {
+                if (candidate.name().equals(normalized)) {
+                    return candidate;
+                }
+            }
+            throw new IllegalArgumentException("Invalid email.delivery.executor-mode '" + value
+                    + "', allowed values: " + Arrays.stream(values())
+                    .map(candidate -> candidate.name().toLowerCase(Locale.ROOT))
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    @Getter
+    private final Mode mode;
+    private final int maxConcurrency;
+    private final long permitTimeoutMs;
+    private final Semaphore permits;
+    private final ThreadPoolExecutor platformPool;
+    private final SimpleAsyncTaskExecutor virtualExecutor;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public EmailDeliveryExecutor(Mode mode, int threads, int queueCapacity, int maxConcurrency, long permitTimeoutMs) {
+        if (mode == Mode.VIRTUAL && !virtualThreadsSupported()) {
+            log.warn("Virtual threads need Java {}+, running email delivery on platform threads", VIRTUAL_THREADS_SINCE);
+            mode = Mode.PLATFORM;
+        }
+        this.mode = mode;
+        this.maxConcurrency = maxConcurrency;
+        this.permitTimeoutMs = permitTimeoutMs;
+        this.permits = new Semaphore(maxConcurrency, true);
+        if (mode == Mode.VIRTUAL) {
+            virtualExecutor = new SimpleAsyncTaskExecutor("EmailDelivery-");
+            virtualExecutor.setVirtualThreads(true);
+            platformPool = null;
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            platformPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "EmailDelivery-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            virtualExecutor = null;
+        }
+    }
+
+    public static boolean virtualThreadsSupported() {
+        return Runtime.version().feature() >= VIRTUAL_THREADS_SINCE;
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        Executor executor = mode == Mode.VIRTUAL ? virtualExecutor : platformPool;
+        try {
+            return CompletableFuture.supplyAsync(() -> withPermit(task), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public void shutdown() {
+        if (platformPool != null) {
+            platformPool.shutdown();
+        } else {
+            virtualExecutor.close();
+        }
+    }
+
+    public int getQueued() {
+        int waitingForPermit = permits.getQueueLength();
+        return platformPool != null ? platformPool.getQueue().size() + waitingForPermit : waitingForPermit;
+    }
+
+    public int getActive() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String modeTag = mode.name().toLowerCase();
+        Gauge.builder("email.delivery.executor.queued", this, EmailDeliveryExecutor::getQueued)
+                .tag("mode", modeTag)
+                .register(registry);
+        Gauge.builder("email.delivery.executor.active", this, EmailDeliveryExecutor::getActive)
+                .tag("mode", modeTag)
+                .register(registry);
+        FunctionCounter.builder("email.delivery.executor.rejected", rejected, AtomicLong::get)
+                .tag("mode", modeTag)
+                .register(registry);
+    }
+
+    private <T> T withPermit(Supplier<T> task) {
+        try {
+            if (!permits.tryAcquire(permitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("No SMTP permit within " + permitTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for an SMTP permit", e);
+        }
+        try {
+            return task.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.EmailOutbox;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers queued emails. Each worker claims its own batch from the outbox, so throughput scales with the
+ * number of workers and of application instances polling the same table.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxService emailOutboxService;
+    private final EmailService emailService;
+    private final EmailDeliveryExecutor emailDeliveryExecutor;
+
+    @Value("${email.outbox.workers:4}")
+    private int workers;
+
+    @Value("${email.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:5000}")
+    public int dispatch() {
+        List<CompletableFuture<Integer>> drains = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            drains.add(emailDeliveryExecutor.supplyAsync(this::drain).exceptionally(e -> {
+                log.warn("Email outbox drain did not run", e);
+                return 0;
+            }));
+        }
+        return drains.stream().mapToInt(CompletableFuture::join).sum();
+    }
+
+    private int drain() {
+        int delivered = 0;
+        List<EmailOutbox> batch;
+        do {
+            batch = emailOutboxService.claimBatch(batchSize);
+            delivered += deliver(batch);
+        } while (batch.size() == batchSize);
+        return delivered;
+    }
+
+    private int deliver(List<EmailOutbox> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Exception> failures;
+        try {
+            failures = emailService.deliver(batch);
+        } catch (RuntimeException e) {
+            failures = batch.stream().collect(Collectors.toMap(EmailOutbox::getId, email -> e));
+        }
+        List<Long> sentIds = new ArrayList<>();
+        for (EmailOutbox email : batch) {
+            Exception failure = failures.get(email.getId());
+            if (failure == null) {
+                sentIds.add(email.getId());
+            } else {
+                log.warn("Failed to deliver email {} to {} (attempt {})", email.getId(), email.getRecipient(), email.getAttempts(), failure);
+                emailOutboxService.markFailed(email.getId(), failure);
+            }
+        }
+        emailOutboxService.markSent(sentIds);
+        return sentIds.size();
+    }
+}
@@ -0,0 +1,37 @@
+package com.clinic.project2.service;
+
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Removes sent and failed outbox messages past their retention, one batch per transaction, so the outbox only
+ * keeps recent history next to the messages still queued.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmailOutboxPurger {
+
+    private final EmailOutboxService emailOutboxService;
+
+    @Value("${email.outbox.purge-batch-size:500}")
+    private int batchSize = 500;
+
+    @Scheduled(cron = "${email.outbox.purge-cron:0 30 4 * * *}")
+    public int purge() {
+        int purged = 0;
+        int removed;
+        do {
+            removed = emailOutboxService.purgeFinished(batchSize);
+            purged += removed;
+        } while (removed == batchSize);
+        if (purged > 0) {
+            log.info("Purged {} sent or failed outbox messages", purged);
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,130 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.EmailOutbox;
+import com.clinic.project2.model.EmailOutboxStatus;
+import com.clinic.project2.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class EmailOutboxService implements MeterBinder {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final List<EmailOutboxStatus> QUEUED = List.of(EmailOutboxStatus.PENDING, EmailOutboxStatus.SENDING);
+    private static final List<EmailOutboxStatus> FINISHED = List.of(EmailOutboxStatus.SENT, EmailOutboxStatus.FAILED);
+
+    private final EmailOutboxRepository emailOutboxRepository;
+
+    @Value("${email.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.initial-backoff-ms:30000}")
+    private long initialBackoffMs;
+
+    @Value("${email.outbox.max-backoff-ms:3600000}")
+    private long maxBackoffMs;
+
+    @Value("${email.outbox.lease-ms:120000}")
+    private long leaseMs;
+
+    @Value("${email.outbox.retention-days:30}")
+    private long retentionDays = 30;
+
+    @Transactional
+    public EmailOutbox enqueue(String recipient, String subject, String body, boolean html) {
+        LocalDateTime now = LocalDateTime.now();
+        EmailOutbox email = EmailOutbox.builder()
+                .recipient(recipient)
+                .subject(subject)
+                .body(body)
+                .html(html)
+                .status(EmailOutboxStatus.PENDING)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build();
+        return emailOutboxRepository.save(email);
+    }
+
+    /**
+     * Claims up to {@code batchSize} due messages. Rows locked by other workers are skipped, and a claimed
+     * message is leased until its next attempt time, so a worker that dies mid-send releases it again.
+     */
+    @Transactional
+    public List<EmailOutbox> claimBatch(int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> batch = emailOutboxRepository.findDueForUpdate(now, batchSize);
+        for (EmailOutbox email : batch) {
+            email.setStatus(EmailOutboxStatus.SENDING);
+            email.setAttempts(email.getAttempts() + 1);
+            email.setNextAttemptAt(now.plus(Duration.ofMillis(leaseMs)));
+        }
+        return batch;
+    }
+
+    @Transactional
+    public void markSent(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            emailOutboxRepository.markSent(ids, EmailOutboxStatus.SENT, LocalDateTime.now());
+        }
+    }
+
+    @Transactional
+    public void markFailed(Long id, Exception cause) {
+        emailOutboxRepository.findById(id).ifPresent(email -> {
+            email.setLastError(truncate(String.valueOf(cause.getMessage())));
+            if (email.getAttempts() >= maxAttempts) {
+                email.setStatus(EmailOutboxStatus.FAILED);
+            } else {
+                email.setStatus(EmailOutboxStatus.PENDING);
+                email.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(backoffMs(email.getAttempts()))));
+            }
+        });
+    }
+
+    /**
+     * Deletes up to {@code batchSize} sent or failed messages queued more than {@code email.outbox.retention-days}
+     * ago and returns how many were deleted.
+     */
+    @Transactional
+    public int purgeFinished(int batchSize) {
+        List<Long> ids = emailOutboxRepository.findIdsCreatedBefore(FINISHED,
+                LocalDateTime.now().minusDays(retentionDays), Limit.of(batchSize));
+        return ids.isEmpty() ? 0 : emailOutboxRepository.deleteByIds(ids);
+    }
+
+    /**
+     * Number of messages waiting for delivery or being delivered right now.
+     */
+    public long countQueued() {
+        return emailOutboxRepository.countByStatusIn(QUEUED);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("email.outbox.depth", this, EmailOutboxService::countQueued)
+                .description("Messages pending or being delivered")
+                .register(registry);
+    }
+
+    long backoffMs(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(initialBackoffMs << exponent, maxBackoffMs);
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -3,74 +3,219 @@ package com.clinic.project2.service;
 
 import com.clinic.project2.exception.EmailNotSendException;
 import com.clinic.project2.model.Client;
+import com.clinic.project2.model.EmailOutbox;
 import com.clinic.project2.model.Film;
-import com.clinic.project2.repository.ClientRepository;
-import com.clinic.project2.repository.FilmRepository;
+import com.clinic.project2.model.dto.FilmNotificationDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import javax.mail.Message;
 import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
-import java.time.LocalDate;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 @Service
 @RequiredArgsConstructor
-public class EmailService {
+public class EmailService implements MeterBinder {
+
+    static final String VALIDATION_SUBJECT = "Account Confirmation";
+    static final String NEW_FILMS_SUBJECT = "\uD83C\uDFA5 New Films Available";
 
     private final JavaMailSender sender;
-    private final FilmRepository filmRepository;
-    private final ClientRepository clientRepository;
+    private final PooledMailSender pooledMailSender;
+    private final EmailOutboxService emailOutboxService;
+    private final NotificationLedger notificationLedger;
+
+    private final AtomicLong renderedBodyCount = new AtomicLong();
+    private final AtomicLong reusedBodyCount = new AtomicLong();
+    private final AtomicLong renderedBytes = new AtomicLong();
+    private final AtomicLong reusedEncodingCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
 
     @Value("http://localhost:8080")
     private String appHost;
 
-    @Async
-    public void sendEmailValidationRequest(Client client) {
-        try {
-            MimeMessage message = sender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
-            helper.setTo(client.getMail());
-            helper.setSubject("Account Confirmation");
-            String confirmationUrl = appHost + "/api/v1/clients/confirm?token=" + client.getVerificationToken();
-            String text = "<p>Dear Client :),</p>"
-                    + "<p>To confirm your account, click <a href=\"" + confirmationUrl + "\">Confirm your account</a>.</p>";
-            helper.setText(text, true);
-            sender.send(message);
-        } catch (MessagingException e) {
-            throw new EmailNotSendException("Failed to send email", e);
+    public void sendEmailValidationRequest(Client client, String token) {
+        String confirmationUrl = appHost + "/api/v1/clients/confirm?token=" + token;
+        String text = "<p>Dear Client :),</p>"
+                + "<p>To confirm your account, click <a href=\"" + confirmationUrl + "\">Confirm your account</a>.</p>";
+        emailOutboxService.enqueue(client.getMail(), VALIDATION_SUBJECT, text, true);
+    }
+
+    public boolean sendNewFilmsNotification(FilmNotificationDto notification, Map<Long, Film> filmsById) {
+        return sendNewFilmsNotification(notification, filmsById, new HashMap<>());
+    }
+
+    /**
+     * Queues one notification, reusing the body already rendered for the same set of films from
+     * {@code renderedBodies}.
+     */
+    boolean sendNewFilmsNotification(FilmNotificationDto notification, Map<Long, Film> filmsById,
+                                     Map<List<Long>, String> renderedBodies) {
+        List<Long> filmIds = notification.getFilmIds().stream()
+                .filter(filmsById::containsKey)
+                .distinct()
+                .sorted()
+                .toList();
+
+        if (filmIds.isEmpty()) {
+            return false;
+        }
+        String emailContent = renderedBodies.get(filmIds);
+        if (emailContent == null) {
+            emailContent = buildEmailContentForNewBooks(filmIds.stream().map(filmsById::get).toList());
+            renderedBodies.put(filmIds, emailContent);
+            renderedBodyCount.incrementAndGet();
+            renderedBytes.addAndGet(emailContent.getBytes(StandardCharsets.UTF_8).length);
+        } else {
+            reusedBodyCount.incrementAndGet();
         }
+        emailOutboxService.enqueue(notification.getMail(), NEW_FILMS_SUBJECT, emailContent, false);
+        return true;
+    }
+
+    /**
+     * Queues one batch of notifications in a single transaction and returns the ids of the films announced.
+     */
+    @Transactional
+    public Set<Long> sendNewFilmsNotifications(List<FilmNotificationDto> notifications, Map<Long, Film> filmsById) {
+        return sendNewFilmsNotifications(notifications, filmsById, new HashMap<>());
     }
 
-    @Async
-    public void sendNewFilmsNotification(String email, List<Film> newFilms) {
-        Client client = clientRepository.findByMail(email);
-        List<Film> filmsToNotify = newFilms.stream()
-                .filter(book -> client.getSubscriptionDirector().contains(book.getDirector()) || client.getSubscriptionCategory().contains(book.getCategory()))
-                .collect(Collectors.toList());
-
-        if (!filmsToNotify.isEmpty()) {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(email);
-            message.setSubject("\uD83C\uDFA5 New Films Available");
-            String emailContent = buildEmailContentForNewBooks(filmsToNotify);
-            message.setText(emailContent);
-            sender.send(message);
-
-            filmsToNotify.forEach(book -> {
-                book.setProcessedDate(LocalDate.now());
-                filmRepository.save(book);
-            });
+    /**
+     * Same as {@link #sendNewFilmsNotifications(List, Map)}, but renders each distinct set of films only once
+     * across all batches that share {@code renderedBodies}. Films the {@link NotificationLedger} has already
+     * recorded for a client are left out of its email and count as announced; the pairs queued now are recorded
+     * in the same transaction.
+     */
+    @Transactional
+    public Set<Long> sendNewFilmsNotifications(List<FilmNotificationDto> notifications, Map<Long, Film> filmsById,
+                                               Map<List<Long>, String> renderedBodies) {
+        Map<Long, Set<Long>> delivered = notificationLedger.findDelivered(notifications, filmsById.keySet());
+        Set<Long> notifiedFilmIds = new HashSet<>();
+        List<FilmNotificationDto> queued = new ArrayList<>();
+        for (FilmNotificationDto notification : notifications) {
+            Set<Long> deliveredFilmIds = delivered.getOrDefault(notification.getClientId(), Set.of());
+            List<Long> pendingFilmIds = notification.getFilmIds().stream()
+                    .filter(filmId -> !deliveredFilmIds.contains(filmId))
+                    .toList();
+            notification.getFilmIds().stream().filter(deliveredFilmIds::contains).forEach(notifiedFilmIds::add);
+            if (pendingFilmIds.isEmpty()) {
+                continue;
+            }
+            FilmNotificationDto pending = pendingFilmIds.size() == notification.getFilmIds().size() ? notification
+                    : FilmNotificationDto.builder()
+                    .clientId(notification.getClientId())
+                    .mail(notification.getMail())
+                    .filmIds(pendingFilmIds)
+                    .build();
+            if (sendNewFilmsNotification(pending, filmsById, renderedBodies)) {
+                notifiedFilmIds.addAll(pending.getFilmIds());
+                queued.add(pending);
+            }
         }
+        notificationLedger.record(queued, filmsById.keySet());
+        return notifiedFilmIds;
     }
-    private String buildEmailContentForNewBooks(List<Film> newFilms) {
+
+    /**
+     * Delivers a batch of queued emails over pooled SMTP connections and returns the failures by outbox id.
+     */
+    public Map<Long, Exception> deliver(List<EmailOutbox> emails) {
+        Map<Long, Exception> failures = new HashMap<>();
+        Map<MimeMessage, Long> idsByMessage = new LinkedHashMap<>();
+        Map<EmailContent, MimeMessage> encodedMessages = new HashMap<>();
+        for (EmailOutbox email : emails) {
+            try {
+                idsByMessage.put(createMessage(email, encodedMessages), email.getId());
+            } catch (MessagingException e) {
+                failures.put(email.getId(), new EmailNotSendException("Failed to send email", e));
+            }
+        }
+        pooledMailSender.send(new ArrayList<>(idsByMessage.keySet()))
+                .forEach((message, cause) -> failures.put(idsByMessage.get(message), cause));
+        sentCount.addAndGet(emails.size() - failures.size());
+        failedCount.addAndGet(failures.size());
+        return failures;
+    }
+
+    /**
+     * Creates the message for one outbox row. Rows with the same content share a message that was encoded once
+     * and is copied per recipient, so the body is not MIME-encoded again for every recipient.
+     */
+    private MimeMessage createMessage(EmailOutbox email, Map<EmailContent, MimeMessage> encodedMessages)
+            throws MessagingException {
+        EmailContent content = new EmailContent(email.getSubject(), email.getBody(), email.isHtml());
+        MimeMessage encoded = encodedMessages.get(content);
+        if (encoded == null) {
+            MimeMessage template = sender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(template, "utf-8");
+            helper.setSubject(content.subject());
+            helper.setText(content.body(), content.html());
+            template.saveChanges();
+            template.removeHeader("Message-ID");
+            encoded = new MimeMessage(template);
+            encodedMessages.put(content, encoded);
+        } else {
+            reusedEncodingCount.incrementAndGet();
+        }
+        MimeMessage message = new MimeMessage(encoded);
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email.getRecipient()));
+        return message;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("notification.render.bodies", renderedBodyCount, AtomicLong::get)
+                .tag("result", "rendered")
+                .register(registry);
+        FunctionCounter.builder("notification.render.bodies", reusedBodyCount, AtomicLong::get)
+                .tag("result", "reused")
+                .register(registry);
+        FunctionCounter.builder("notification.render.bytes", renderedBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .description("Bytes of notification bodies rendered")
+                .register(registry);
+        Gauge.builder("notification.render.dedup.ratio", this, EmailService::dedupRatio)
+                .description("Share of notifications that reused an already rendered body")
+                .register(registry);
+        FunctionCounter.builder("email.delivery.encoded.reused", reusedEncodingCount, AtomicLong::get)
+                .description("Messages copied from an already encoded message instead of being encoded again")
+                .register(registry);
+        FunctionCounter.builder("email.delivery.messages", sentCount, AtomicLong::get)
+                .tag("result", "sent")
+                .register(registry);
+        FunctionCounter.builder("email.delivery.messages", failedCount, AtomicLong::get)
+                .tag("result", "failed")
+                .register(registry);
+    }
+
+    double dedupRatio() {
+        long reused = reusedBodyCount.get();
+        long total = reused + renderedBodyCount.get();
+        return total == 0 ? 0 : (double) reused / total;
+    }
+
+    String buildEmailContentForNewBooks(List<Film> newFilms) {
         StringBuilder text = new StringBuilder();
         text.append("Dear Subscriber,\n\n");
         text.append("We're excited to inform you that new films matching your subscription preferences are available at Our Cinema.\n\n");
@@ -82,4 +227,7 @@ public class EmailService {
         text.append("Stay tuned for more updates and happy reading!");
         return text.toString();
     }
-}
\ No newline at end of file
+
+    private record EmailContent(String subject, String body, boolean html) {
+    }
+}
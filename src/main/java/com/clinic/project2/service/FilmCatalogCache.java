@@ -0,0 +1,126 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.dto.FilmPageDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * LRU cache of film catalog pages. Every write bumps the catalog version, which is part of the cache key, so a
+ * page loaded concurrently with a write can never be served after it. The version only covers writes made on this
+ * node, so pages also expire after {@code film.cache.ttl-ms}, which bounds how long a write made on another
+ * instance stays invisible here.
+ */
+@Component
+public class FilmCatalogCache implements MeterBinder {
+
+    @Value("${film.cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    @Value("${film.cache.ttl-ms:5000}")
+    private long ttlMs = 5000;
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Map<PageKey, CachedPage> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PageKey, CachedPage> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public FilmPageDto getPage(Long after, int limit, String director, String category, LongFunction<FilmPageDto> loader) {
+        long currentVersion = version.get();
+        PageKey key = new PageKey(currentVersion, after, limit, director, category);
+        CachedPage cached;
+        synchronized (pages) {
+            cached = pages.get(key);
+            if (cached != null && System.nanoTime() - cached.loadedAt() >= TimeUnit.MILLISECONDS.toNanos(ttlMs)) {
+                pages.remove(key);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.page();
+        }
+        misses.incrementAndGet();
+        long loadedAt = System.nanoTime();
+        FilmPageDto page = loader.apply(currentVersion);
+        synchronized (pages) {
+            if (version.get() == currentVersion) {
+                pages.put(key, new CachedPage(page, loadedAt));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("film.catalog.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("film.catalog.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("film.catalog.cache.evictions", evictions, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("film.catalog.cache.size", this, FilmCatalogCache::size)
+                .register(registry);
+        Gauge.builder("film.catalog.version", version, AtomicLong::get)
+                .register(registry);
+    }
+
+    public long invalidate() {
+        long newVersion = version.incrementAndGet();
+        synchronized (pages) {
+            pages.clear();
+        }
+        return newVersion;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int size() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    private record CachedPage(FilmPageDto page, long loadedAt) {
+    }
+
+    private record PageKey(long version, Long after, int limit, String director, String category) {
+    }
+}
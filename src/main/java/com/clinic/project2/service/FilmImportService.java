@@ -0,0 +1,186 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.exception.InvalidImportException;
+import com.clinic.project2.model.command.CreateFilmCommand;
+import com.clinic.project2.model.dto.FilmImportErrorDto;
+import com.clinic.project2.model.dto.FilmImportReportDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports films from a CSV or NDJSON body one line at a time. Valid rows are inserted in batches of
+ * {@code film.import.batch-size}, invalid rows are collected into the report, so only the current batch is held
+ * in memory.
+ */
+@Service
+@RequiredArgsConstructor
+public class FilmImportService {
+
+    private static final List<String> CSV_COLUMNS = List.of("director", "title", "category");
+
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${film.import.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${film.import.max-reported-errors:1000}")
+    private int maxReportedErrors = 1000;
+
+    public FilmImportReportDto importCsv(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String header = lines.readLine();
+        if (header == null) {
+            throw new InvalidImportException("CSV header is missing");
+        }
+        int[] columns = columnPositions(parseCsvLine(header));
+        return importLines(lines, 1, line -> {
+            List<String> values = parseCsvLine(line);
+            return CreateFilmCommand.builder()
+                    .director(value(values, columns[0]))
+                    .title(value(values, columns[1]))
+                    .category(value(values, columns[2]))
+                    .build();
+        });
+    }
+
+    public FilmImportReportDto importNdjson(Reader reader) throws IOException {
+        return importLines(new BufferedReader(reader), 0, line -> {
+            try {
+                return objectMapper.readValue(line, CreateFilmCommand.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+            }
+        });
+    }
+
+    private FilmImportReportDto importLines(BufferedReader lines, long row, RowParser parser) throws IOException {
+        List<CreateFilmCommand> batch = new ArrayList<>(batchSize);
+        List<FilmImportErrorDto> errors = new ArrayList<>();
+        long imported = 0;
+        long rejected = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            row++;
+            if (line.isBlank()) {
+                continue;
+            }
+            String error;
+            try {
+                CreateFilmCommand command = parser.parse(line);
+                error = validate(command);
+                if (error == null) {
+                    batch.add(command);
+                }
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+            if (error != null) {
+                rejected++;
+                if (errors.size() < maxReportedErrors) {
+                    errors.add(new FilmImportErrorDto(row, error));
+                }
+            }
+            if (batch.size() >= batchSize) {
+                filmService.saveBatch(batch);
+                imported += batch.size();
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            filmService.saveBatch(batch);
+            imported += batch.size();
+        }
+        return FilmImportReportDto.builder()
+                .imported(imported)
+                .rejected(rejected)
+                .errors(errors)
+                .build();
+    }
+
+    private String validate(CreateFilmCommand command) {
+        if (command == null) {
+            return "Row is empty";
+        }
+        Set<ConstraintViolation<CreateFilmCommand>> violations = validator.validate(command);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static int[] columnPositions(List<String> header) {
+        int[] positions = new int[CSV_COLUMNS.size()];
+        for (int i = 0; i < CSV_COLUMNS.size(); i++) {
+            positions[i] = -1;
+            for (int j = 0; j < header.size(); j++) {
+                if (header.get(j).trim().toLowerCase(Locale.ROOT).equals(CSV_COLUMNS.get(i))) {
+                    positions[i] = j;
+                }
+            }
+            if (positions[i] < 0) {
+                throw new InvalidImportException("CSV header must contain columns " + CSV_COLUMNS);
+            }
+        }
+        return positions;
+    }
+
+    private static String value(List<String> values, int position) {
+        return position < values.size() ? values.get(position).trim() : null;
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+        CreateFilmCommand parse(String line);
+    }
+}
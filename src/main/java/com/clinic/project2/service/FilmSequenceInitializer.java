@@ -0,0 +1,47 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.Film;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves {@code film_seq} past the ids already in the film table before the application saves any film. Databases
+ * created while film ids were auto-increment have rows but a fresh sequence, and without this the first pooled
+ * blocks would collide with existing primary keys. Runs at every startup and only ever moves the sequence forward.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSequenceInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void seed() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM film", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        long next = maxId + Film.ID_ALLOCATION_SIZE + 1;
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        if (dialect.getSequenceSupport().supportsSequences()) {
+            Long current = jdbcTemplate.queryForObject(
+                    dialect.getSequenceSupport().getSequenceNextValString(Film.ID_SEQUENCE), Long.class);
+            if (current != null && current < next) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + Film.ID_SEQUENCE + " RESTART WITH " + next);
+                log.info("Moved {} to {}, past the existing film ids", Film.ID_SEQUENCE, next);
+            }
+        } else if (jdbcTemplate.update("UPDATE " + Film.ID_SEQUENCE + " SET next_val = ? WHERE next_val < ?",
+                next, next) > 0) {
+            log.info("Moved {} to {}, past the existing film ids", Film.ID_SEQUENCE, next);
+        }
+    }
+}
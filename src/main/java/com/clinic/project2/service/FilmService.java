@@ -5,12 +5,22 @@ import com.clinic.project2.mapper.FilmMapper;
 import com.clinic.project2.model.Film;
 import com.clinic.project2.model.command.CreateFilmCommand;
 import com.clinic.project2.model.dto.FilmDto;
+import com.clinic.project2.model.dto.FilmPageDto;
+import com.clinic.project2.model.event.FilmCreatedEvent;
+import com.clinic.project2.model.event.FilmsImportedEvent;
 import com.clinic.project2.repository.FilmRepository;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static com.clinic.project2.mapper.FilmMapper.mapToDto;
 
@@ -18,17 +28,76 @@ import static com.clinic.project2.mapper.FilmMapper.mapToDto;
 @RequiredArgsConstructor
 public class FilmService {
 
+    static final int MAX_PAGE_SIZE = 500;
+
     private final FilmRepository filmRepository;
+    private final FilmCatalogCache filmCatalogCache;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
 
+    @Transactional
     public FilmDto save(CreateFilmCommand command) {
         Film toSave = FilmMapper.mapFromCommand(command);
         Film savedFilm = filmRepository.save(toSave);
+        invalidateCatalogAfterCommit();
+        eventPublisher.publishEvent(new FilmCreatedEvent(savedFilm.getId()));
         return mapToDto(savedFilm);
     }
 
-    public List<FilmDto> findAll() {
-        return filmRepository.findAll().stream()
-                .map(FilmMapper::mapToDto)
+    /**
+     * Inserts one import batch in its own transaction and detaches it afterwards, so a long import does not
+     * grow the persistence context. Subscribers of the batch are notified through one {@link FilmsImportedEvent}
+     * rather than an event per film.
+     */
+    @Transactional
+    public void saveBatch(List<CreateFilmCommand> commands) {
+        List<Long> filmIds = filmRepository.saveAll(commands.stream().map(FilmMapper::mapFromCommand).toList())
+                .stream()
+                .map(Film::getId)
                 .toList();
+        entityManager.flush();
+        entityManager.clear();
+        invalidateCatalogAfterCommit();
+        if (!filmIds.isEmpty()) {
+            eventPublisher.publishEvent(new FilmsImportedEvent(filmIds));
+        }
+    }
+
+    public FilmPageDto findPage(Long after, int limit, String director, String category) {
+        Long cursor = after == null ? 0L : after;
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return filmCatalogCache.getPage(cursor, pageSize, director, category, version -> {
+            List<FilmDto> films = filmRepository.findPage(cursor, director, category, Limit.of(pageSize));
+            Long nextCursor = films.size() == pageSize ? films.get(films.size() - 1).getId() : null;
+            return FilmPageDto.builder()
+                    .films(films)
+                    .nextCursor(nextCursor)
+                    .catalogVersion(version)
+                    .build();
+        });
+    }
+
+    /**
+     * Bumps the catalog version once the current transaction has committed. Invalidating earlier would let a
+     * concurrent reader cache the page as it was before the commit under the new version.
+     */
+    private void invalidateCatalogAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            filmCatalogCache.invalidate();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                filmCatalogCache.invalidate();
+            }
+        });
+    }
+
+    @Transactional
+    public void streamAll(String director, String category, Consumer<FilmDto> consumer) {
+        try (Stream<FilmDto> films = filmRepository.streamAll(director, category)) {
+            films.forEach(consumer);
+        }
     }
 }
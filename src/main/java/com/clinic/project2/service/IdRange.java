@@ -0,0 +1,51 @@
+package com.clinic.project2.service;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Ids {@code after < id <= upTo}.
+ */
+public record IdRange(long after, long upTo) {
+
+    /**
+     * Splits the range into at most {@code parts} contiguous ranges of near-equal width.
+     */
+    public List<IdRange> split(int parts) {
+        long width = upTo - after;
+        if (width <= 0) {
+            return List.of(this);
+        }
+        int count = (int) Math.max(1, Math.min(parts, width));
+        long step = (width + count - 1) / count;
+        List<IdRange> ranges = new ArrayList<>(count);
+        for (long from = after; from < upTo; from += step) {
+            ranges.add(new IdRange(from, Math.min(from + step, upTo)));
+        }
+        return ranges;
+    }
+
+    public long width() {
+        return Math.max(0, upTo - after);
+    }
+
+    /**
+     * Writes ranges as {@code after:upTo} pairs separated by commas, the form {@link #parseAll} reads back.
+     */
+    public static String join(List<IdRange> ranges) {
+        return ranges.stream().map(range -> range.after() + ":" + range.upTo()).collect(Collectors.joining(","));
+    }
+
+    public static List<IdRange> parseAll(String ranges) {
+        if (ranges == null || ranges.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(ranges.split(","))
+                .map(range -> range.split(":"))
+                .map(bounds -> new IdRange(Long.parseLong(bounds[0]), Long.parseLong(bounds[1])))
+                .toList();
+    }
+}
@@ -0,0 +1,249 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.JobShard;
+import com.clinic.project2.model.JobShardStatus;
+import com.clinic.project2.model.dto.JobProgressDto;
+import com.clinic.project2.repository.JobShardRepository;
+import jakarta.transaction.Transactional;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Splits a scheduled job run into id-range shards stored in {@code job_shard}, so several instances share the run
+ * instead of repeating it. A node claims one shard at a time under a lease that it renews while it works; a shard
+ * whose lease ran out, because its node died, can be claimed by any other node. While working, the node checkpoints
+ * the ranges of the shard it has not scanned yet, so whoever claims the shard next continues from there.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JobShardService {
+
+    private final JobShardRepository jobShardRepository;
+
+    @Getter
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<Long> heldShards = ConcurrentHashMap.newKeySet();
+
+    @Value("${job.shard.lease-ms:60000}")
+    private long leaseMs = 60_000;
+
+    /**
+     * Creates the shards of a run unless another node already did. Every shard records the ids of the films the
+     * run covers, so all shards work on the same films whatever is saved while the run is in progress.
+     */
+    public void createShards(String jobName, LocalDate runDate, IdRange ids, int shardCount,
+                             Collection<Long> runFilmIds) {
+        if (jobShardRepository.existsByJobNameAndRunDate(jobName, runDate)) {
+            return;
+        }
+        List<IdRange> ranges = ids.split(shardCount);
+        List<JobShard> shards = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            shards.add(JobShard.builder()
+                    .jobName(jobName)
+                    .runDate(runDate)
+                    .shardIndex(i)
+                    .rangeAfter(ranges.get(i).after())
+                    .rangeUpTo(ranges.get(i).upTo())
+                    .runFilmIds(joinIds(runFilmIds))
+                    .status(JobShardStatus.PENDING)
+                    .build());
+        }
+        try {
+            jobShardRepository.saveAll(shards);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Shards of {} for {} were created by another node", jobName, runDate);
+        }
+    }
+
+    /**
+     * Claims the next pending shard of a run, or one whose lease expired, and returns null once none is left.
+     */
+    @Transactional
+    public JobShard claim(String jobName, LocalDate runDate) {
+        LocalDateTime now = LocalDateTime.now();
+        return jobShardRepository.findClaimableForUpdate(jobName, runDate, now)
+                .map(shard -> {
+                    if (shard.getStatus() == JobShardStatus.RUNNING) {
+                        log.warn("Taking over shard {} of {} from {}", shard.getShardIndex(), jobName, shard.getOwner());
+                    }
+                    shard.setStatus(JobShardStatus.RUNNING);
+                    shard.setOwner(nodeId);
+                    shard.setLeaseUntil(now.plus(Duration.ofMillis(leaseMs)));
+                    if (shard.getStartedAt() == null) {
+                        shard.setStartedAt(now);
+                    }
+                    heldShards.add(shard.getId());
+                    return shard;
+                })
+                .orElse(null);
+    }
+
+    /**
+     * Hands a shard back after its work failed: the lease is dropped and the shard is pending again with its last
+     * checkpoint, so any node can claim it right away instead of waiting for a lease this node would keep renewing.
+     */
+    public void release(JobShard shard) {
+        heldShards.remove(shard.getId());
+        if (jobShardRepository.release(shard.getId(), nodeId, JobShardStatus.RUNNING, JobShardStatus.PENDING) == 0) {
+            log.warn("Job shard {} was taken over before it was released", shard.getId());
+        }
+    }
+
+    /**
+     * Returns the dates of runs before {@code before} that still have a shard to claim, oldest first.
+     */
+    public List<LocalDate> findUnfinishedRunDates(String jobName, LocalDate before) {
+        return jobShardRepository.findClaimableRunDates(jobName, before, LocalDateTime.now(), JobShardStatus.PENDING,
+                JobShardStatus.RUNNING);
+    }
+
+    public boolean holds(Long shardId) {
+        return heldShards.contains(shardId);
+    }
+
+    /**
+     * Saves the id ranges of a shard still to be scanned, the films announced so far and its counters. Returns
+     * false if the lease was lost, in which case nothing is saved.
+     */
+    public boolean checkpoint(JobShard shard, List<IdRange> pendingRanges, Collection<Long> notifiedFilmIds,
+                              long scannedClients, long notifiedClients) {
+        String ranges = IdRange.join(pendingRanges);
+        String filmIds = joinIds(notifiedFilmIds);
+        LocalDateTime now = LocalDateTime.now();
+        if (jobShardRepository.checkpoint(shard.getId(), nodeId, JobShardStatus.RUNNING, ranges, filmIds,
+                scannedClients, notifiedClients, now) == 0) {
+            heldShards.remove(shard.getId());
+            log.warn("Job shard {} was taken over before its checkpoint", shard.getId());
+            return false;
+        }
+        shard.setPendingRanges(ranges);
+        shard.setNotifiedFilmIds(filmIds);
+        shard.setScannedClients(scannedClients);
+        shard.setNotifiedClients(notifiedClients);
+        shard.setCheckpointAt(now);
+        return true;
+    }
+
+    /**
+     * Sums up the checkpoints of a run. Progress is the share of the client id space already scanned, and the
+     * remaining time is extrapolated from the time spent on it so far.
+     */
+    public JobProgressDto progress(String jobName, LocalDate runDate) {
+        List<JobShard> shards = jobShardRepository.findByJobNameAndRunDateOrderByShardIndex(jobName, runDate);
+        long total = 0;
+        long scanned = 0;
+        JobProgressDto.JobProgressDtoBuilder progress = JobProgressDto.builder()
+                .jobName(jobName)
+                .runDate(runDate)
+                .shards(shards.size());
+        for (JobShard shard : shards) {
+            long width = new IdRange(shard.getRangeAfter(), shard.getRangeUpTo()).width();
+            total += width;
+            if (shard.getStatus() == JobShardStatus.DONE) {
+                scanned += width;
+            } else if (shard.getPendingRanges() != null) {
+                scanned += width - IdRange.parseAll(shard.getPendingRanges()).stream().mapToLong(IdRange::width).sum();
+            }
+        }
+        long done = shards.stream().filter(shard -> shard.getStatus() == JobShardStatus.DONE).count();
+        double fraction = total == 0 ? done == shards.size() ? 1 : 0 : (double) scanned / total;
+        LocalDateTime startedAt = shards.stream().map(JobShard::getStartedAt).filter(Objects::nonNull)
+                .min(LocalDateTime::compareTo).orElse(null);
+        progress.doneShards((int) done)
+                .runningShards((int) shards.stream().filter(shard -> shard.getStatus() == JobShardStatus.RUNNING).count())
+                .scannedClients(shards.stream().mapToLong(JobShard::getScannedClients).sum())
+                .notifiedClients(shards.stream().mapToLong(JobShard::getNotifiedClients).sum())
+                .progress(fraction)
+                .startedAt(startedAt)
+                .lastCheckpointAt(shards.stream().map(JobShard::getCheckpointAt).filter(Objects::nonNull)
+                        .max(LocalDateTime::compareTo).orElse(null));
+        if (shards.isEmpty()) {
+            return progress.status("NOT_STARTED").build();
+        }
+        if (done == shards.size()) {
+            return progress.status(JobShardStatus.DONE.name()).remainingSeconds(0L).build();
+        }
+        progress.status(JobShardStatus.RUNNING.name());
+        if (startedAt != null && fraction > 0) {
+            LocalDateTime now = LocalDateTime.now();
+            long remaining = (long) (Duration.between(startedAt, now).toSeconds() * (1 - fraction) / fraction);
+            progress.remainingSeconds(remaining).estimatedCompletion(now.plusSeconds(remaining));
+        }
+        return progress.build();
+    }
+
+    @Scheduled(fixedDelayString = "${job.shard.renew-interval-ms:15000}")
+    public void renewLeases() {
+        LocalDateTime leaseUntil = LocalDateTime.now().plus(Duration.ofMillis(leaseMs));
+        for (Long shardId : heldShards) {
+            if (jobShardRepository.renew(shardId, nodeId, JobShardStatus.RUNNING, leaseUntil) == 0) {
+                heldShards.remove(shardId);
+                log.warn("Lost the lease on job shard {}", shardId);
+            }
+        }
+    }
+
+    /**
+     * Marks a shard done. The completion that finishes the whole run passes the film ids notified by all of its
+     * shards to {@code onRunCompleted} inside the same transaction. Returns false if the lease was lost.
+     */
+    @Transactional
+    public boolean complete(JobShard shard, Collection<Long> notifiedFilmIds, Consumer<Set<Long>> onRunCompleted) {
+        heldShards.remove(shard.getId());
+        List<JobShard> run = jobShardRepository.lockRun(shard.getJobName(), shard.getRunDate());
+        JobShard current = run.stream()
+                .filter(candidate -> candidate.getId().equals(shard.getId()))
+                .findFirst()
+                .orElse(null);
+        if (current == null || current.getStatus() != JobShardStatus.RUNNING || !nodeId.equals(current.getOwner())) {
+            log.warn("Job shard {} was taken over before it completed", shard.getId());
+            return false;
+        }
+        current.setStatus(JobShardStatus.DONE);
+        current.setLeaseUntil(null);
+        current.setPendingRanges("");
+        current.setNotifiedFilmIds(joinIds(notifiedFilmIds));
+        if (run.stream().allMatch(candidate -> candidate.getStatus() == JobShardStatus.DONE)) {
+            Set<Long> runFilmIds = new HashSet<>();
+            for (JobShard done : run) {
+                runFilmIds.addAll(parseIds(done.getNotifiedFilmIds()));
+            }
+            onRunCompleted.accept(runFilmIds);
+        }
+        return true;
+    }
+
+    private static String joinIds(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    static Set<Long> parseIds(String ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Set.of();
+        }
+        return Arrays.stream(ids.split(",")).map(Long::valueOf).collect(Collectors.toSet());
+    }
+}
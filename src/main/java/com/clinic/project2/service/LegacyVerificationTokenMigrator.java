@@ -0,0 +1,98 @@
+package com.clinic.project2.service;
+
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the plain verification tokens of accounts registered before tokens got their own table from the old
+ * {@code client.verification_token} column into {@code verification_token}, hashed and with a fresh
+ * {@code verification.token.ttl-hours} expiry. Those accounts can then still be confirmed, and are purged like any
+ * other unconfirmed account once the token expires. The column itself is left in place, emptied; dropping it is
+ * up to an explicit schema migration once every instance runs this version.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LegacyVerificationTokenMigrator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${verification.token.ttl-hours:48}")
+    private long ttlHours = 48;
+
+    @Value("${verification.token.purge-batch-size:500}")
+    private int batchSize = 500;
+
+    @PostConstruct
+    public void migrate() {
+        if (!legacyColumnExists()) {
+            return;
+        }
+        int migrated = 0;
+        Integer moved;
+        try {
+            while ((moved = transactionTemplate.execute(status -> migrateBatch())) != null && moved > 0) {
+                migrated += moved;
+            }
+        } catch (DataAccessException e) {
+            log.error("Moving legacy verification tokens failed after {} tokens, the rest is retried at the next " +
+                    "startup", migrated, e);
+            return;
+        }
+        if (migrated > 0) {
+            log.info("Moved {} legacy verification tokens to the verification_token table", migrated);
+        }
+    }
+
+    private boolean legacyColumnExists() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = metaData.storesUpperCaseIdentifiers() ? "CLIENT" : "client";
+            String column = metaData.storesUpperCaseIdentifiers() ? "VERIFICATION_TOKEN" : "verification_token";
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, table, column)) {
+                return columns.next();
+            }
+        }));
+    }
+
+    private int migrateBatch() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT id, active, verification_token FROM client " +
+                "WHERE verification_token IS NOT NULL ORDER BY id LIMIT ? FOR UPDATE", batchSize);
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofHours(ttlHours));
+        List<Object[]> tokens = new ArrayList<>();
+        List<Object[]> clientIds = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Object clientId = row.get("id");
+            clientIds.add(new Object[]{clientId});
+            if (!Boolean.TRUE.equals(row.get("active"))) {
+                tokens.add(new Object[]{VerificationTokenService.hash((String) row.get("verification_token")),
+                        clientId, expiresAt});
+            }
+        }
+        if (!tokens.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO verification_token (token_hash, client_id, expires_at) " +
+                    "VALUES (?, ?, ?)", tokens);
+        }
+        if (!clientIds.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE client SET verification_token = NULL WHERE id = ?", clientIds);
+        }
+        return rows.size();
+    }
+}
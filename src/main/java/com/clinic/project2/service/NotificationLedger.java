@@ -0,0 +1,84 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.dto.FilmNotificationDto;
+import com.clinic.project2.model.projection.DeliveredPair;
+import com.clinic.project2.repository.NotificationDeliveryRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Records in {@code notification_delivery} which client has been notified about which film. A row is written in
+ * the transaction that queues the email, so a run that is resumed, repeated or taken over by another node only
+ * queues the pairs that were not delivered yet.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NotificationLedger {
+
+    private final NotificationDeliveryRepository notificationDeliveryRepository;
+
+    @Value("${notification.ledger.retention-days:30}")
+    private long retentionDays = 30;
+
+    /**
+     * Returns, by client, the ids of the films among {@code filmIds} the client was already notified about.
+     */
+    public Map<Long, Set<Long>> findDelivered(Collection<FilmNotificationDto> notifications, Collection<Long> filmIds) {
+        List<Long> clientIds = notifications.stream()
+                .map(FilmNotificationDto::getClientId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (clientIds.isEmpty() || filmIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Set<Long>> delivered = new HashMap<>();
+        for (DeliveredPair pair : notificationDeliveryRepository.findDelivered(clientIds, filmIds)) {
+            delivered.computeIfAbsent(pair.getClientId(), c -> new HashSet<>()).add(pair.getFilmId());
+        }
+        return delivered;
+    }
+
+    /**
+     * Records the films of {@code notifications} found in {@code filmIds} as delivered to their clients.
+     */
+    public void record(Collection<FilmNotificationDto> notifications, Set<Long> filmIds) {
+        List<long[]> pairs = new ArrayList<>();
+        for (FilmNotificationDto notification : notifications) {
+            if (notification.getClientId() == null) {
+                continue;
+            }
+            notification.getFilmIds().stream()
+                    .filter(filmIds::contains)
+                    .distinct()
+                    .forEach(filmId -> pairs.add(new long[]{notification.getClientId(), filmId}));
+        }
+        notificationDeliveryRepository.insertAll(pairs, LocalDateTime.now());
+    }
+
+    @Transactional
+    @Scheduled(cron = "${notification.ledger.purge-cron:0 0 4 * * *}")
+    public int purge() {
+        int purged = notificationDeliveryRepository.deleteSentBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (purged > 0) {
+            log.info("Purged {} notification deliveries older than {} days", purged, retentionDays);
+        }
+        return purged;
+    }
+}
@@ -1,60 +1,403 @@
 package com.clinic.project2.service;
 
 
-import com.clinic.project2.model.Client;
 import com.clinic.project2.model.Film;
+import com.clinic.project2.model.JobShard;
+import com.clinic.project2.model.dto.ClientContactDto;
+import com.clinic.project2.model.dto.FilmNotificationDto;
 import com.clinic.project2.repository.ClientRepository;
 import com.clinic.project2.repository.FilmRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
-public class NotificationService {
+public class NotificationService implements MeterBinder {
+
+    static final String JOB_NAME = "film-notifications";
+    private static final long MERGE_POLL_MS = 100;
 
     private final EmailService emailService;
     private final FilmRepository filmRepository;
     private final ClientRepository clientRepository;
+    private final SubscriptionIndex subscriptionIndex;
+    private final EmailOutboxService emailOutboxService;
+    private final JobShardService jobShardService;
+
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private final AtomicLong backpressureNanos = new AtomicLong();
+    private final StageTimer filmQueryTimer = new StageTimer();
+    private final StageTimer matchingTimer = new StageTimer();
+    private final StageTimer clientScanTimer = new StageTimer();
+    private final StageTimer sendTimer = new StageTimer();
+    private final AtomicLong matchedClients = new AtomicLong();
+
+    @Value("${notification.client-batch-size:500}")
+    private int clientBatchSize;
+
+    @Value("${notification.shards:8}")
+    private int shardCount = 8;
+
+    @Value("${notification.parallelism:4}")
+    private int parallelism = 4;
 
+    @Value("${notification.max-queued-emails:5000}")
+    private long maxQueuedEmails = 5000;
 
+    @Value("${notification.backpressure-poll-ms:1000}")
+    private long backpressurePollMs = 1000;
 
+    @Value("${notification.checkpoint-interval-ms:10000}")
+    private long checkpointIntervalMs = 10_000;
+
+
+    /**
+     * Runs the nightly notification job as a set of client-id shards shared through {@link JobShardService}, so
+     * with several instances every node works on different clients. Within a shard, clients are matched in
+     * {@code notification.parallelism} id ranges, each scanned by its own keyset cursor on its own thread, and the
+     * matched batches are merged into a single send stage that queues them one transaction per batch. Before each
+     * batch the send stage waits while the outbox holds {@code notification.max-queued-emails} or more undelivered
+     * messages, so a rate-limited SMTP side slows the run down instead of piling up work. Every queued
+     * client/film pair is recorded by the {@link NotificationLedger}, so a shard that is resumed after a crash or
+     * taken over from a node that lost its lease only queues what is still missing. A film is marked processed
+     * once all shards of the run are done, which keeps it out of later runs.
+     */
     @Scheduled(cron = "0 0 20 * * *")
     public void sendNotifications() {
-        LocalDate twoDaysAgo = LocalDate.now().minusDays(2);
-        List<Film> newFilms = filmRepository.findUnprocessedBooksAddedRecently(twoDaysAgo);
+        LocalDate runDate = LocalDate.now();
+        long start = System.nanoTime();
+        List<Film> newFilms = filmRepository.findUnprocessedBooksAddedRecently(runDate.minusDays(2));
+        filmQueryTimer.record(start);
+        start = System.nanoTime();
+        subscriptionIndex.rebuild();
+        Map<Long, List<Film>> clientToFilmMap = subscriptionIndex.match(newFilms);
+        matchingTimer.record(start);
+        if (clientToFilmMap.isEmpty()) {
+            return;
+        }
+        Long maxClientId = clientRepository.findMaxActiveId();
+        if (maxClientId == null) {
+            return;
+        }
+        jobShardService.createShards(JOB_NAME, runDate, new IdRange(0, maxClientId), shardCount,
+                newFilms.stream().map(Film::getId).toList());
+        runShards(runDate, newFilms, clientToFilmMap);
+    }
 
-        Map<String, List<Film>> emailToFilmMap = new HashMap<>();
-        Pageable pageable = PageRequest.of(0, 20);
+    /**
+     * Finishes the runs of earlier days that were left with unclaimed shards, for example because the only node
+     * working on them was restarted. Each shard continues from its last checkpoint with the films recorded on it.
+     */
+    @Scheduled(initialDelayString = "${notification.resume-initial-delay-ms:60000}",
+            fixedDelayString = "${notification.resume-interval-ms:300000}")
+    public void resumeUnfinishedRuns() {
+        List<LocalDate> runDates = jobShardService.findUnfinishedRunDates(JOB_NAME, LocalDate.now());
+        if (runDates.isEmpty()) {
+            return;
+        }
+        subscriptionIndex.rebuild();
+        for (LocalDate runDate : runDates) {
+            log.info("Resuming the {} run of {}", JOB_NAME, runDate);
+            runShards(runDate, List.of(), Map.of());
+        }
+    }
 
-        while (true) {
-            Page<Client> clients = clientRepository.findAllActiveClients(pageable);
+    /**
+     * Works on the shards of a run until none is left to claim. {@code newFilms} and their matches are reused by
+     * the shards that cover exactly those films; other shards load and match the films recorded on them.
+     */
+    private void runShards(LocalDate runDate, List<Film> newFilms, Map<Long, List<Film>> clientToFilmMap) {
+        JobShard shard;
+        while ((shard = jobShardService.claim(JOB_NAME, runDate)) != null) {
+            try {
+                List<Film> shardFilms = runFilms(newFilms, JobShardService.parseIds(shard.getRunFilmIds()));
+                Map<Long, List<Film>> shardMatches = shardFilms.equals(newFilms) ? clientToFilmMap
+                        : rematch(shardFilms);
+                Set<Long> notifiedFilmIds = notifyClients(shard, shardMatches, shardFilms);
+                if (notifiedFilmIds != null) {
+                    jobShardService.complete(shard, notifiedFilmIds, runFilmIds -> {
+                        if (!runFilmIds.isEmpty()) {
+                            filmRepository.markProcessed(runFilmIds, LocalDate.now());
+                        }
+                    });
+                }
+            } catch (RuntimeException e) {
+                log.error("Shard {} of {} failed, releasing it", shard.getShardIndex(), JOB_NAME, e);
+                jobShardService.release(shard);
+                throw e;
+            }
+        }
+    }
 
-            for (Client client : clients.getContent()) {
-                for (Film film : newFilms) {
-                    if (client.getSubscriptionCategory().contains(film.getCategory()) || client.getSubscriptionDirector().contains(film.getDirector())) {
-                        emailToFilmMap.computeIfAbsent(client.getMail(), c -> new ArrayList<>()).add(film);
+    /**
+     * Queues the notifications of one shard and returns the ids of the films announced, or null if the shard's
+     * lease was lost on the way. A shard resumed from a checkpoint only scans the ranges it had left and starts from
+     * the films it had announced, and every {@code notification.checkpoint-interval-ms} both are checkpointed again.
+     */
+    private Set<Long> notifyClients(JobShard shard, Map<Long, List<Film>> clientToFilmMap, List<Film> films) {
+        Set<Long> notifiedFilmIds = new HashSet<>(JobShardService.parseIds(shard.getNotifiedFilmIds()));
+        if (clientToFilmMap.isEmpty()) {
+            return notifiedFilmIds;
+        }
+        Map<Long, Film> filmsById = films.stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        List<IdRange> ranges = shard.getPendingRanges() != null
+                ? IdRange.parseAll(shard.getPendingRanges())
+                : new IdRange(shard.getRangeAfter(), shard.getRangeUpTo()).split(parallelism);
+        if (ranges.isEmpty()) {
+            return notifiedFilmIds;
+        }
+        ShardProgress progress = new ShardProgress(ranges, shard.getScannedClients(), shard.getNotifiedClients());
+        BlockingQueue<MatchedPage> matched = new ArrayBlockingQueue<>(2 * ranges.size());
+        Map<List<Long>, String> renderedBodies = new HashMap<>();
+        ExecutorService matchers = Executors.newFixedThreadPool(ranges.size(), matcherThreadFactory());
+        try {
+            CompletableFuture<Void> matching = CompletableFuture.allOf(IntStream.range(0, ranges.size())
+                    .mapToObj(index -> CompletableFuture.runAsync(
+                            () -> match(index, ranges.get(index), clientToFilmMap, matched), matchers))
+                    .toArray(CompletableFuture[]::new));
+            long lastCheckpoint = System.currentTimeMillis();
+            MatchedPage page;
+            while ((page = nextBatch(matched, matching)) != null) {
+                if (!page.notifications().isEmpty()) {
+                    awaitOutboxCapacity();
+                    if (!jobShardService.holds(shard.getId())) {
+                        log.warn("Stopping shard {} of {}, its lease was lost", shard.getShardIndex(), JOB_NAME);
+                        return null;
+                    }
+                    long start = System.nanoTime();
+                    notifiedFilmIds.addAll(send(page.notifications(), filmsById, renderedBodies));
+                    sendTimer.record(start);
+                }
+                progress.advance(page);
+                if (System.currentTimeMillis() - lastCheckpoint >= checkpointIntervalMs) {
+                    if (!progress.checkpoint(shard, notifiedFilmIds)) {
+                        return null;
                     }
+                    lastCheckpoint = System.currentTimeMillis();
                 }
             }
-            if (!clients.hasNext()) {
-                break;
+            matching.join();
+        } finally {
+            matchers.shutdownNow();
+        }
+        return progress.checkpoint(shard, notifiedFilmIds) ? notifiedFilmIds : null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder("notification.backpressure.wait", this,
+                        service -> service.backpressureWaits.get(), service -> service.backpressureNanos.get(),
+                        TimeUnit.NANOSECONDS)
+                .description("Time the notification run spent waiting for the email outbox to drain")
+                .register(registry);
+        filmQueryTimer.register(registry, "film-query");
+        matchingTimer.register(registry, "matching");
+        clientScanTimer.register(registry, "client-scan");
+        sendTimer.register(registry, "send");
+        FunctionCounter.builder("notification.matched.clients", matchedClients, AtomicLong::get)
+                .description("Clients matched to at least one new film")
+                .register(registry);
+    }
+
+    /**
+     * Queues one batch. If another node recorded some of its pairs in the ledger at the same time, the batch is
+     * rolled back and queued once more, now without those pairs.
+     */
+    private Set<Long> send(List<FilmNotificationDto> notifications, Map<Long, Film> filmsById,
+                           Map<List<Long>, String> renderedBodies) {
+        try {
+            return emailService.sendNewFilmsNotifications(notifications, filmsById, renderedBodies);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Notifications of the batch were recorded concurrently, queueing the rest again");
+            return emailService.sendNewFilmsNotifications(notifications, filmsById, renderedBodies);
+        }
+    }
+
+    private Map<Long, List<Film>> rematch(List<Film> films) {
+        long start = System.nanoTime();
+        Map<Long, List<Film>> matches = subscriptionIndex.match(films);
+        matchingTimer.record(start);
+        return matches;
+    }
+
+    /**
+     * The films a shard has to announce: those recorded on its run when the shards were created. Film ids are not
+     * monotonic across nodes, so a film saved since then is left to the next run whatever its id.
+     */
+    private List<Film> runFilms(List<Film> newFilms, Set<Long> runFilmIds) {
+        List<Film> films = newFilms.stream().filter(film -> runFilmIds.contains(film.getId())).toList();
+        return films.size() == runFilmIds.size() ? films : filmRepository.findAllById(runFilmIds);
+    }
+
+    private void match(int rangeIndex, IdRange range, Map<Long, List<Film>> clientToFilmMap,
+                       BlockingQueue<MatchedPage> matched) {
+        Long lastId = range.after();
+        List<ClientContactDto> clients;
+        do {
+            long start = System.nanoTime();
+            clients = clientRepository.findActiveClientsInRange(lastId, range.upTo(), Limit.of(clientBatchSize));
+            clientScanTimer.record(start);
+
+            if (!clients.isEmpty()) {
+                lastId = clients.get(clients.size() - 1).getId();
+            }
+            List<FilmNotificationDto> notifications = toNotifications(clients, clientToFilmMap);
+            matchedClients.addAndGet(notifications.size());
+            long scannedUpTo = clients.size() == clientBatchSize ? lastId : range.upTo();
+            try {
+                matched.put(new MatchedPage(rangeIndex, scannedUpTo, clients.size(), notifications));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        } while (clients.size() == clientBatchSize);
+    }
+
+    /**
+     * Builds the notifications of the clients of one scanned page that matched at least one film.
+     */
+    static List<FilmNotificationDto> toNotifications(List<ClientContactDto> clients,
+                                                     Map<Long, List<Film>> clientToFilmMap) {
+        List<FilmNotificationDto> notifications = new ArrayList<>();
+        for (ClientContactDto client : clients) {
+            List<Film> films = clientToFilmMap.get(client.getId());
+            if (films != null) {
+                notifications.add(FilmNotificationDto.builder()
+                        .clientId(client.getId())
+                        .mail(client.getMail())
+                        .filmIds(films.stream().map(Film::getId).toList())
+                        .build());
             }
-            pageable = clients.nextPageable();
         }
-        emailToFilmMap.forEach((email, films) -> {
-            if (!films.isEmpty()) {
-                emailService.sendNewFilmsNotification(email, films);
+        return notifications;
+    }
+
+    private static MatchedPage nextBatch(BlockingQueue<MatchedPage> matched, CompletableFuture<Void> matching) {
+        try {
+            MatchedPage batch;
+            while ((batch = matched.poll(MERGE_POLL_MS, TimeUnit.MILLISECONDS)) == null) {
+                if (matching.isDone()) {
+                    return matched.poll();
+                }
             }
-        });
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static ThreadFactory matcherThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "NotificationMatcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void awaitOutboxCapacity() {
+        if (maxQueuedEmails <= 0 || emailOutboxService.countQueued() < maxQueuedEmails) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            do {
+                Thread.sleep(backpressurePollMs);
+            } while (emailOutboxService.countQueued() >= maxQueuedEmails);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            backpressureWaits.incrementAndGet();
+            backpressureNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Accumulates the time spent in one stage of the run, published as {@code notification.run.stage}.
+     */
+    private static final class StageTimer {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        void record(long startNanos) {
+            count.incrementAndGet();
+            nanos.addAndGet(System.nanoTime() - startNanos);
+        }
+
+        void register(MeterRegistry registry, String stage) {
+            FunctionTimer.builder("notification.run.stage", this,
+                            timer -> timer.count.get(), timer -> timer.nanos.get(), TimeUnit.NANOSECONDS)
+                    .tag("stage", stage)
+                    .description("Time the notification run spent in each stage")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * One scanned page of a range: the clients that matched and the id the range has been scanned up to.
+     */
+    private record MatchedPage(int range, long scannedUpTo, int scanned, List<FilmNotificationDto> notifications) {
+    }
+
+    /**
+     * The part of each range of a shard that is still to be scanned, and the shard's counters. Only the send stage
+     * advances it, after a page was queued, so a checkpoint never skips clients that were not notified yet.
+     */
+    private class ShardProgress {
+
+        private final List<IdRange> ranges;
+        private long scannedClients;
+        private long notifiedClients;
+
+        ShardProgress(List<IdRange> ranges, long scannedClients, long notifiedClients) {
+            this.ranges = new ArrayList<>(ranges);
+            this.scannedClients = scannedClients;
+            this.notifiedClients = notifiedClients;
+        }
+
+        void advance(MatchedPage page) {
+            ranges.set(page.range(), new IdRange(page.scannedUpTo(), ranges.get(page.range()).upTo()));
+            scannedClients += page.scanned();
+            notifiedClients += page.notifications().size();
+        }
+
+        boolean checkpoint(JobShard shard, Set<Long> notifiedFilmIds) {
+            List<IdRange> pending = ranges.stream().filter(range -> range.width() > 0).toList();
+            return jobShardService.checkpoint(shard, pending, notifiedFilmIds, scannedClients, notifiedClients);
+        }
     }
 }
@@ -0,0 +1,85 @@
+package com.clinic.project2.service;
+
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket for outgoing SMTP messages: refills at {@code email.rate-limit.messages-per-second} and holds at
+ * most {@code email.rate-limit.burst} tokens. Callers block until their tokens are available, so a throttled
+ * provider slows the senders down instead of dropping messages. A non-positive rate disables the limit.
+ */
+@Component
+public class OutboundRateLimiter implements MeterBinder {
+
+    private final LongSupplier clock;
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong waitedNanos = new AtomicLong();
+
+    @Value("${email.rate-limit.messages-per-second:10}")
+    private double messagesPerSecond = 10;
+
+    @Value("${email.rate-limit.burst:20}")
+    private int burst = 20;
+
+    private boolean started;
+    private double tokens;
+    private long refilledAt;
+
+    public OutboundRateLimiter() {
+        this(System::nanoTime);
+    }
+
+    OutboundRateLimiter(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public void acquire(int permits) {
+        long waitNanos = reserve(permits);
+        if (waitNanos <= 0) {
+            return;
+        }
+        throttled.incrementAndGet();
+        waitedNanos.addAndGet(waitNanos);
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes {@code permits} tokens, going into debt if the bucket is short, and returns how long the caller has to
+     * wait until the debt is paid off.
+     */
+    synchronized long reserve(int permits) {
+        if (messagesPerSecond <= 0) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        if (!started) {
+            started = true;
+            tokens = burst;
+        } else {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * messagesPerSecond / 1_000_000_000.0);
+        }
+        refilledAt = now;
+        tokens -= permits;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / messagesPerSecond * 1_000_000_000.0);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder("email.rate-limiter.wait", this,
+                        limiter -> limiter.throttled.get(), limiter -> limiter.waitedNanos.get(), TimeUnit.NANOSECONDS)
+                .description("Time senders spent blocked on the outbound rate limit")
+                .register(registry);
+    }
+}
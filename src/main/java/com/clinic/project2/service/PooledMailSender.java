@@ -0,0 +1,205 @@
+package com.clinic.project2.service;
+
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages over pooled SMTP connections, so the connect, authentication and STARTTLS handshake is paid
+ * once per connection instead of once per message. A connection is retired after
+ * {@code email.smtp.messages-per-connection} messages or {@code email.smtp.max-connection-age-ms}. Every message
+ * waits for the {@link OutboundRateLimiter} before it is sent. The time SMTP takes to accept a message, without the
+ * rate limit wait, is published as the {@code email.smtp.send} histogram.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PooledMailSender implements MeterBinder {
+
+    private static final String DEFAULT_PROTOCOL = "smtp";
+
+    private final JavaMailSender sender;
+    private final OutboundRateLimiter rateLimiter;
+
+    private final BlockingQueue<PooledTransport> idleTransports = new LinkedBlockingQueue<>();
+
+    private volatile Timer smtpLatency;
+
+    @Value("${email.smtp.messages-per-connection:100}")
+    private int messagesPerConnection;
+
+    @Value("${email.smtp.max-connection-age-ms:60000}")
+    private long maxConnectionAgeMs;
+
+    /**
+     * Sends all messages and returns the ones that could not be delivered together with their cause.
+     */
+    public Map<MimeMessage, Exception> send(List<MimeMessage> messages) {
+        if (!(sender instanceof JavaMailSenderImpl mailSender)) {
+            return sendInChunks(messages);
+        }
+        Map<MimeMessage, Exception> failures = new LinkedHashMap<>();
+        PooledTransport transport = null;
+        for (int i = 0; i < messages.size(); i++) {
+            MimeMessage message = messages.get(i);
+            try {
+                if (transport == null || transport.isExpired()) {
+                    close(transport);
+                    transport = borrow(mailSender);
+                }
+            } catch (MessagingException e) {
+                messages.subList(i, messages.size()).forEach(unsent -> failures.put(unsent, e));
+                return failures;
+            }
+            try {
+                message.saveChanges();
+                rateLimiter.acquire(1);
+                long start = System.nanoTime();
+                transport.send(message);
+                recordLatency(System.nanoTime() - start, 1);
+            } catch (MessagingException e) {
+                failures.put(message, e);
+                if (!transport.isConnected()) {
+                    close(transport);
+                    transport = null;
+                }
+            }
+        }
+        if (transport != null) {
+            release(transport);
+        }
+        return failures;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        smtpLatency = Timer.builder("email.smtp.send")
+                .description("Time SMTP took to accept one message")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Records {@code messages} samples of the average time per message, as a chunk sent in one call has no
+     * per-message timing.
+     */
+    private void recordLatency(long nanos, int messages) {
+        Timer timer = smtpLatency;
+        if (timer == null) {
+            return;
+        }
+        for (int i = 0; i < messages; i++) {
+            timer.record(nanos / messages, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    void closeAll() {
+        PooledTransport transport;
+        while ((transport = idleTransports.poll()) != null) {
+            close(transport);
+        }
+    }
+
+    private Map<MimeMessage, Exception> sendInChunks(List<MimeMessage> messages) {
+        Map<MimeMessage, Exception> failures = new LinkedHashMap<>();
+        for (int from = 0; from < messages.size(); from += messagesPerConnection) {
+            List<MimeMessage> chunk = messages.subList(from, Math.min(from + messagesPerConnection, messages.size()));
+            try {
+                rateLimiter.acquire(chunk.size());
+                long start = System.nanoTime();
+                sender.send(chunk.toArray(new MimeMessage[0]));
+                recordLatency(System.nanoTime() - start, chunk.size());
+            } catch (MailSendException e) {
+                if (e.getFailedMessages().isEmpty()) {
+                    chunk.forEach(message -> failures.put(message, e));
+                }
+                e.getFailedMessages().forEach((message, cause) -> failures.put((MimeMessage) message, cause));
+            } catch (RuntimeException e) {
+                chunk.forEach(message -> failures.put(message, e));
+            }
+        }
+        return failures;
+    }
+
+    private PooledTransport borrow(JavaMailSenderImpl mailSender) throws MessagingException {
+        PooledTransport transport;
+        while ((transport = idleTransports.poll()) != null) {
+            if (!transport.isExpired() && transport.isConnected()) {
+                return transport;
+            }
+            close(transport);
+        }
+        Session session = mailSender.getSession();
+        String protocol = mailSender.getProtocol() != null ? mailSender.getProtocol()
+                : session.getProperty("mail.transport.protocol");
+        Transport connection = session.getTransport(protocol != null ? protocol : DEFAULT_PROTOCOL);
+        connection.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return new PooledTransport(connection, System.currentTimeMillis());
+    }
+
+    private void release(PooledTransport transport) {
+        if (transport.isExpired()) {
+            close(transport);
+        } else {
+            idleTransports.offer(transport);
+        }
+    }
+
+    private void close(PooledTransport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.connection.close();
+        } catch (MessagingException e) {
+            log.debug("Failed to close SMTP connection", e);
+        }
+    }
+
+    private class PooledTransport {
+
+        private final Transport connection;
+        private final long openedAt;
+        private int sent;
+
+        PooledTransport(Transport connection, long openedAt) {
+            this.connection = connection;
+            this.openedAt = openedAt;
+        }
+
+        void send(MimeMessage message) throws MessagingException {
+            connection.sendMessage(message, message.getAllRecipients());
+            sent++;
+        }
+
+        boolean isConnected() {
+            return connection.isConnected();
+        }
+
+        boolean isExpired() {
+            return sent >= messagesPerConnection
+                    || System.currentTimeMillis() - openedAt >= maxConnectionAgeMs;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.dto.ClientContactDto;
+import com.clinic.project2.model.dto.FilmNotificationDto;
+import com.clinic.project2.model.event.FilmCreatedEvent;
+import com.clinic.project2.model.event.FilmsImportedEvent;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.FilmRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Notifies the subscribers of a film as soon as it is saved instead of waiting for the nightly run. Subscribers
+ * are paged by client id straight from the director and category indexes of the subscription tables, so only
+ * they are read, and a subscription made on another node that the {@link SubscriptionIndex} of this node does not
+ * hold yet is still found. Every queued client/film pair is recorded by the {@link NotificationLedger};
+ * the film stays unprocessed and the nightly run only queues the pairs still missing, such as clients that
+ * subscribed after the film was saved. An import batch is handled as a whole, so a client subscribed to several
+ * films of the batch gets one email listing them.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "notification.real-time", havingValue = "true")
+public class RealTimeNotificationListener {
+
+    private final FilmRepository filmRepository;
+    private final ClientRepository clientRepository;
+    private final EmailService emailService;
+
+    @Value("${notification.client-batch-size:500}")
+    private int clientBatchSize = 500;
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onFilmCreated(FilmCreatedEvent event) {
+        Film film = filmRepository.findById(event.filmId()).orElse(null);
+        if (film == null || film.getProcessedDate() != null) {
+            return;
+        }
+        Map<Long, Film> filmsById = Map.of(film.getId(), film);
+        Map<List<Long>, String> renderedBodies = new HashMap<>();
+        long lastId = 0;
+        List<Long> subscriberIds;
+        do {
+            subscriberIds = clientRepository.findSubscriberIds(film.getDirector(), film.getCategory(), lastId,
+                    clientBatchSize);
+            if (subscriberIds.isEmpty()) {
+                break;
+            }
+            lastId = subscriberIds.get(subscriberIds.size() - 1);
+            List<ClientContactDto> clients = clientRepository.findActiveClientsByIds(subscriberIds);
+            if (clients.isEmpty()) {
+                continue;
+            }
+            List<FilmNotificationDto> notifications = clients.stream()
+                    .map(client -> FilmNotificationDto.builder()
+                            .clientId(client.getId())
+                            .mail(client.getMail())
+                            .filmIds(List.of(film.getId()))
+                            .build())
+                    .toList();
+            emailService.sendNewFilmsNotifications(notifications, filmsById, renderedBodies);
+        } while (subscriberIds.size() == clientBatchSize);
+    }
+
+    /**
+     * Collects the subscribers of every unprocessed film of the batch first, then queues one notification per active
+     * client with all of its films. The collected ids are bounded by the import batch size times the subscribers.
+     */
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onFilmsImported(FilmsImportedEvent event) {
+        Map<Long, Film> filmsById = new TreeMap<>();
+        for (Film film : filmRepository.findAllById(event.filmIds())) {
+            if (film.getProcessedDate() == null) {
+                filmsById.put(film.getId(), film);
+            }
+        }
+        Map<Long, List<Long>> filmIdsByClient = new TreeMap<>();
+        for (Film film : filmsById.values()) {
+            long lastId = 0;
+            List<Long> subscriberIds;
+            do {
+                subscriberIds = clientRepository.findSubscriberIds(film.getDirector(), film.getCategory(), lastId,
+                        clientBatchSize);
+                for (Long clientId : subscriberIds) {
+                    filmIdsByClient.computeIfAbsent(clientId, id -> new ArrayList<>()).add(film.getId());
+                }
+                if (!subscriberIds.isEmpty()) {
+                    lastId = subscriberIds.get(subscriberIds.size() - 1);
+                }
+            } while (subscriberIds.size() == clientBatchSize);
+        }
+        Map<List<Long>, String> renderedBodies = new HashMap<>();
+        List<Long> clientIds = new ArrayList<>(filmIdsByClient.keySet());
+        for (int from = 0; from < clientIds.size(); from += clientBatchSize) {
+            List<ClientContactDto> clients = clientRepository.findActiveClientsByIds(
+                    clientIds.subList(from, Math.min(from + clientBatchSize, clientIds.size())));
+            if (clients.isEmpty()) {
+                continue;
+            }
+            List<FilmNotificationDto> notifications = clients.stream()
+                    .map(client -> FilmNotificationDto.builder()
+                            .clientId(client.getId())
+                            .mail(client.getMail())
+                            .filmIds(filmIdsByClient.get(client.getId()))
+                            .build())
+                    .toList();
+            emailService.sendNewFilmsNotifications(notifications, filmsById, renderedBodies);
+        }
+    }
+}
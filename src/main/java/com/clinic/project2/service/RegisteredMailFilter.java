@@ -0,0 +1,96 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.repository.ClientRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of registered mail addresses. A negative answer means the address is certainly not registered
+ * by this instance, so registration can skip the database probe and rely on the unique index alone.
+ */
+@Component
+@RequiredArgsConstructor
+public class RegisteredMailFilter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ClientRepository clientRepository;
+
+    @Value("${client.mail-filter.expected-insertions:1000000}")
+    private long expectedInsertions = 1_000_000;
+
+    @Value("${client.mail-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate = 0.01;
+
+    private AtomicLongArray bits;
+    private int bitCount;
+    private int hashCount;
+
+    @PostConstruct
+    void init() {
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bitCount = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63L));
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        bits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try (Stream<String> mails = clientRepository.streamAllMails()) {
+            mails.forEach(this::put);
+        }
+    }
+
+    public void put(String mail) {
+        long hash = hash(mail);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            long mask = 1L << index;
+            int word = index >>> 6;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    public boolean mightContain(String mail) {
+        long hash = hash(mail);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(String mail) {
+        String normalized = mail.trim().toLowerCase(Locale.ROOT);
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,242 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.TermKind;
+import com.clinic.project2.model.projection.SubscriptionEntry;
+import com.clinic.project2.repository.ClientRepository;
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index of subscriptions: the dictionary id of a director or category to a compressed bitmap of the ids
+ * of the clients subscribed to it.
+ */
+@Component
+@RequiredArgsConstructor
+public class SubscriptionIndex {
+
+    private static final long MAX_CLIENT_ID = 0xFFFFFFFFL;
+
+    private final ClientRepository clientRepository;
+    private final TermDictionary termDictionary;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Integer, RoaringBitmap> clientsByDirector = new HashMap<>();
+    private Map<Integer, RoaringBitmap> clientsByCategory = new HashMap<>();
+    private List<IndexChange> changesDuringRebuild;
+
+    /**
+     * Reloads the index from the subscription tables. The bitmaps are loaded without holding the lock, so changes
+     * applied meanwhile are recorded and replayed on the new bitmaps before they replace the current ones.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            termDictionary.migrate();
+            Map<Integer, RoaringBitmap> directors = load(clientRepository.findAllDirectorSubscriptions());
+            Map<Integer, RoaringBitmap> categories = load(clientRepository.findAllCategorySubscriptions());
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild.forEach(change -> change.applyTo(directors, categories));
+                clientsByDirector = directors;
+                clientsByCategory = categories;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a client to the given terms once the current transaction has committed, so a subscription that is
+     * rolled back never reaches the index. New terms are registered right away, in the caller's transaction.
+     */
+    public void subscribe(Long clientId, Collection<String> directors, Collection<String> categories) {
+        List<Integer> directorIds = register(TermKind.DIRECTOR, directors);
+        List<Integer> categoryIds = register(TermKind.CATEGORY, categories);
+        afterCommit(() -> apply((byDirector, byCategory) -> {
+            add(byDirector, clientId, directorIds);
+            add(byCategory, clientId, categoryIds);
+        }));
+    }
+
+    /**
+     * Removes a client from the given terms once the current transaction has committed.
+     */
+    public void unsubscribe(Long clientId, Collection<String> directors, Collection<String> categories) {
+        List<Integer> directorIds = find(TermKind.DIRECTOR, directors);
+        List<Integer> categoryIds = find(TermKind.CATEGORY, categories);
+        afterCommit(() -> apply((byDirector, byCategory) -> {
+            remove(byDirector, clientId, directorIds);
+            remove(byCategory, clientId, categoryIds);
+        }));
+    }
+
+    public Set<Long> findSubscribers(Film film) {
+        Set<Long> subscribers = new HashSet<>();
+        subscriberBitmap(film).forEach((int clientBit) -> subscribers.add(Integer.toUnsignedLong(clientBit)));
+        return subscribers;
+    }
+
+    public Map<Long, List<Film>> match(List<Film> films) {
+        Map<Long, List<Film>> filmsByClient = new HashMap<>();
+        for (Film film : films) {
+            subscriberBitmap(film).forEach((int clientBit) -> filmsByClient
+                    .computeIfAbsent(Integer.toUnsignedLong(clientBit), c -> new ArrayList<>()).add(film));
+        }
+        return filmsByClient;
+    }
+
+    /**
+     * Bytes held by the bitmaps of the index, without the maps around them.
+     */
+    long bitmapSizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (RoaringBitmap bitmap : clientsByDirector.values()) {
+                bytes += bitmap.getLongSizeInBytes();
+            }
+            for (RoaringBitmap bitmap : clientsByCategory.values()) {
+                bytes += bitmap.getLongSizeInBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap subscriberBitmap(Film film) {
+        Integer directorId = termDictionary.find(TermKind.DIRECTOR, film.getDirector());
+        Integer categoryId = termDictionary.find(TermKind.CATEGORY, film.getCategory());
+        lock.readLock().lock();
+        try {
+            return RoaringBitmap.or(lookup(clientsByDirector, directorId), lookup(clientsByCategory, categoryId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Map<Integer, RoaringBitmap> load(List<SubscriptionEntry> entries) {
+        Map<Integer, RoaringBitmap> index = new HashMap<>();
+        for (SubscriptionEntry entry : entries) {
+            index.computeIfAbsent(entry.getTermId(), t -> new RoaringBitmap()).add(clientBit(entry.getClientId()));
+        }
+        index.values().forEach(RoaringBitmap::runOptimize);
+        return index;
+    }
+
+    private List<Integer> register(TermKind kind, Collection<String> terms) {
+        if (terms == null) {
+            return List.of();
+        }
+        return terms.stream().map(term -> termDictionary.register(kind, term)).toList();
+    }
+
+    private List<Integer> find(TermKind kind, Collection<String> terms) {
+        if (terms == null) {
+            return List.of();
+        }
+        List<Integer> termIds = new ArrayList<>();
+        for (String term : terms) {
+            Integer termId = termDictionary.find(kind, term);
+            if (termId != null) {
+                termIds.add(termId);
+            }
+        }
+        return termIds;
+    }
+
+    private void apply(IndexChange change) {
+        lock.writeLock().lock();
+        try {
+            change.applyTo(clientsByDirector, clientsByCategory);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static RoaringBitmap lookup(Map<Integer, RoaringBitmap> index, Integer termId) {
+        RoaringBitmap clients = termId == null ? null : index.get(termId);
+        return clients == null ? new RoaringBitmap() : clients;
+    }
+
+    private static void add(Map<Integer, RoaringBitmap> index, Long clientId, List<Integer> termIds) {
+        for (Integer termId : termIds) {
+            index.computeIfAbsent(termId, t -> new RoaringBitmap()).add(clientBit(clientId));
+        }
+    }
+
+    private static void remove(Map<Integer, RoaringBitmap> index, Long clientId, List<Integer> termIds) {
+        for (Integer termId : termIds) {
+            index.computeIfPresent(termId, (t, clients) -> {
+                clients.remove(clientBit(clientId));
+                return clients.isEmpty() ? null : clients;
+            });
+        }
+    }
+
+    /**
+     * Client ids are stored as unsigned 32-bit values, so the index holds ids up to 4294967295.
+     */
+    private static int clientBit(Long clientId) {
+        if (clientId < 0 || clientId > MAX_CLIENT_ID) {
+            throw new IllegalArgumentException("Client id " + clientId
+                    + " is outside the range the subscription index can hold, 0 to " + MAX_CLIENT_ID);
+        }
+        return (int) clientId.longValue();
+    }
+
+    /**
+     * A subscription change applied to the director and category bitmaps.
+     */
+    @FunctionalInterface
+    private interface IndexChange {
+
+        void applyTo(Map<Integer, RoaringBitmap> clientsByDirector, Map<Integer, RoaringBitmap> clientsByCategory);
+    }
+}
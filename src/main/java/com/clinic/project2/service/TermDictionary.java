@@ -0,0 +1,89 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.DictionaryTerm;
+import com.clinic.project2.model.TermKind;
+import com.clinic.project2.repository.DictionaryTermRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Integer ids of directors and categories, stored in {@code term_dictionary}, so subscriptions can be matched on
+ * ids instead of strings. Ids are never reused, so a cached id stays valid for the lifetime of the instance.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TermDictionary {
+
+    private final DictionaryTermRepository dictionaryTermRepository;
+
+    private volatile Map<TermKind, Map<String, Integer>> ids = emptyIds();
+
+    /**
+     * Adds the directors and categories stored as text in films and subscriptions that have no id yet, then
+     * reloads the dictionary.
+     */
+    public void migrate() {
+        try {
+            int imported = dictionaryTermRepository.importDirectors() + dictionaryTermRepository.importCategories();
+            if (imported > 0) {
+                log.info("Imported {} directors and categories into the term dictionary", imported);
+            }
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Term dictionary was migrated concurrently by another node");
+        }
+        reload();
+    }
+
+    public void reload() {
+        Map<TermKind, Map<String, Integer>> loaded = emptyIds();
+        for (DictionaryTerm term : dictionaryTermRepository.findAll()) {
+            loaded.get(term.getKind()).put(term.getName(), term.getId());
+        }
+        ids = loaded;
+    }
+
+    /**
+     * Returns the id of a term, or null if nobody ever subscribed to it.
+     */
+    public Integer find(TermKind kind, String name) {
+        return name == null ? null : ids.get(kind).get(name);
+    }
+
+    /**
+     * Returns the id of a term, storing it first if needed. The insert skips a term another node already stored
+     * instead of failing, so it never marks the caller's transaction rollback-only, and the locking read that
+     * follows sees the row even if it was committed after the caller's snapshot was taken.
+     */
+    public int register(TermKind kind, String name) {
+        Integer id = find(kind, name);
+        if (id != null) {
+            return id;
+        }
+        dictionaryTermRepository.insertIgnore(kind.name(), name);
+        id = dictionaryTermRepository.findByKindAndName(kind, name)
+                .orElseThrow(() -> new IllegalStateException("Term " + kind + " " + name + " could not be stored"))
+                .getId();
+        ids.get(kind).put(name, id);
+        return id;
+    }
+
+    int size() {
+        return ids.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private static Map<TermKind, Map<String, Integer>> emptyIds() {
+        Map<TermKind, Map<String, Integer>> empty = new EnumMap<>(TermKind.class);
+        for (TermKind kind : TermKind.values()) {
+            empty.put(kind, new ConcurrentHashMap<>());
+        }
+        return empty;
+    }
+}
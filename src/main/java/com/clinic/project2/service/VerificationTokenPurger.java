@@ -0,0 +1,36 @@
+package com.clinic.project2.service;
+
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Removes expired verification tokens and the accounts never confirmed with them, one batch per transaction.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VerificationTokenPurger {
+
+    private final VerificationTokenService verificationTokenService;
+
+    @Value("${verification.token.purge-batch-size:500}")
+    private int batchSize = 500;
+
+    @Scheduled(fixedDelayString = "${verification.token.purge-interval-ms:3600000}")
+    public int purge() {
+        int purged = 0;
+        int removed;
+        do {
+            removed = verificationTokenService.purgeExpired(batchSize);
+            purged += removed;
+        } while (removed == batchSize);
+        if (purged > 0) {
+            log.info("Purged {} expired verification tokens", purged);
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,137 @@
+package com.clinic.project2.service;
+
+
+import com.clinic.project2.model.VerificationToken;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.VerificationTokenRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues single-use account verification tokens. Only the SHA-256 hash of a token is stored, with an expiry of
+ * {@code verification.token.ttl-hours}. Tokens issued by this instance are also kept in memory, so confirming
+ * them needs no lookup before the delete that consumes them.
+ */
+@Service
+@RequiredArgsConstructor
+public class VerificationTokenService {
+
+    private final VerificationTokenRepository verificationTokenRepository;
+    private final ClientRepository clientRepository;
+
+    private final Map<String, PendingToken> pendingTokens = new ConcurrentHashMap<>();
+
+    @Value("${verification.token.ttl-hours:48}")
+    private long ttlHours = 48;
+
+    @Value("${verification.token.cache-max-entries:100000}")
+    private int cacheMaxEntries = 100_000;
+
+    @Transactional
+    public String issue(Long clientId) {
+        String token = UUID.randomUUID().toString();
+        String tokenHash = hash(token);
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofHours(ttlHours));
+        verificationTokenRepository.save(VerificationToken.builder()
+                .tokenHash(tokenHash)
+                .clientId(clientId)
+                .expiresAt(expiresAt)
+                .build());
+        PendingToken pending = new PendingToken(clientId, expiresAt);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache(tokenHash, pending);
+                }
+            });
+        } else {
+            cache(tokenHash, pending);
+        }
+        return token;
+    }
+
+    /**
+     * Consumes a token and returns the id of the client it was issued for, or nothing if the token is unknown,
+     * expired or already used.
+     */
+    @Transactional
+    public Optional<Long> consume(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+        String tokenHash = hash(token);
+        PendingToken pending = pendingTokens.remove(tokenHash);
+        if (pending == null) {
+            pending = verificationTokenRepository.findByTokenHash(tokenHash)
+                    .map(stored -> new PendingToken(stored.getClientId(), stored.getExpiresAt()))
+                    .orElse(null);
+        }
+        if (pending == null || !pending.expiresAt().isAfter(LocalDateTime.now())
+                || verificationTokenRepository.deleteByTokenHash(tokenHash) == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(pending.clientId());
+    }
+
+    /**
+     * Deletes up to {@code batchSize} expired tokens together with the accounts that were never confirmed with
+     * them, and returns the number of tokens removed.
+     */
+    @Transactional
+    public int purgeExpired(int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        pendingTokens.values().removeIf(pending -> !pending.expiresAt().isAfter(now));
+        List<VerificationToken> expired = verificationTokenRepository.findExpired(now, Limit.of(batchSize));
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        List<Long> inactiveClientIds = clientRepository.findInactiveIds(
+                expired.stream().map(VerificationToken::getClientId).toList());
+        if (!inactiveClientIds.isEmpty()) {
+            clientRepository.deleteDirectorSubscriptions(inactiveClientIds);
+            clientRepository.deleteCategorySubscriptions(inactiveClientIds);
+            clientRepository.deleteAllByIdInBatch(inactiveClientIds);
+        }
+        return verificationTokenRepository.deleteByIds(expired.stream().map(VerificationToken::getId).toList());
+    }
+
+    int pendingCount() {
+        return pendingTokens.size();
+    }
+
+    private void cache(String tokenHash, PendingToken pending) {
+        if (pendingTokens.size() < cacheMaxEntries) {
+            pendingTokens.put(tokenHash, pending);
+        }
+    }
+
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record PendingToken(Long clientId, LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.clinic.project2;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs the JMH benchmarks, the {@code *Jmh} classes, with {@code mvn test -Pbenchmark -Dtest=JmhBenchmark}.
+ * {@code -Djmh.include} picks benchmarks by regex and {@code -Djmh.params} narrows their parameters, for example
+ * {@code -Djmh.params="clients=1000,100000;films=10"}. Results are written to {@code target/jmh-result.json}, so
+ * two runs can be compared.
+ */
+class JmhBenchmark {
+
+    @Test
+    void runJmhBenchmarks() throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("jmh.include", ".*Jmh\\."))
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(Integer.getInteger("jmh.warmup-iterations", 3))
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(Integer.getInteger("jmh.iterations", 5))
+                .measurementTime(TimeValue.seconds(1))
+                .forks(Integer.getInteger("jmh.forks", 1))
+                .jvmArgsAppend("-Xmx" + System.getProperty("jmh.heap", "4g"))
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("jmh.result", "target/jmh-result.json"));
+        String params = System.getProperty("jmh.params", "");
+        for (String param : params.split(";")) {
+            if (!param.isBlank()) {
+                String[] nameAndValues = param.split("=", 2);
+                options.param(nameAndValues[0].trim(), nameAndValues[1].trim().split(","));
+            }
+        }
+        assertFalse(new Runner(options.build()).run().isEmpty());
+    }
+}
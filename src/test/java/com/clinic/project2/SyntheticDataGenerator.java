@@ -0,0 +1,166 @@
+package com.clinic.project2;
+
+import com.clinic.project2.model.Film;
+import com.clinic.project2.repository.FilmRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Fills the database with load test data. Directors and categories are picked from Zipf distributions, so a few
+ * popular ones carry most of the subscriptions and films, as they do in production. A client subscribes to one or
+ * more directors, with fewer clients the more directors, and to up to two categories.
+ */
+public class SyntheticDataGenerator {
+
+    public static final String MAIL_PREFIX = "load-";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_DIRECTORS_PER_CLIENT = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmRepository filmRepository;
+    private final Random random;
+    private final double[] directorWeights;
+    private final double[] categoryWeights;
+
+    public SyntheticDataGenerator(JdbcTemplate jdbcTemplate, FilmRepository filmRepository, long seed) {
+        this(jdbcTemplate, filmRepository, seed, 2_000, 40);
+    }
+
+    public SyntheticDataGenerator(JdbcTemplate jdbcTemplate, FilmRepository filmRepository, long seed,
+                                  int directors, int categories) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.filmRepository = filmRepository;
+        this.random = new Random(seed);
+        this.directorWeights = zipfCdf(directors, 1.0);
+        this.categoryWeights = zipfCdf(categories, 0.8);
+    }
+
+    /**
+     * Deletes clients, films and everything the notification run, the ledger and the outbox left behind.
+     */
+    public void clear() {
+        for (String table : List.of("subscription_director", "subscription_category", "verification_token",
+                "client", "film", "email_outbox", "job_shard", "notification_delivery")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    /**
+     * Inserts {@code count} active clients with their subscriptions and returns their ids.
+     */
+    public List<Long> generateClients(int count) {
+        List<Object[]> clients = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            clients.add(new Object[]{"Load", "Client " + i, MAIL_PREFIX + i + "@example.com", "password", true});
+            if (clients.size() == BATCH_SIZE || i == count - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO client (first_name, last_name, mail, password, active) "
+                        + "VALUES (?, ?, ?, ?, ?)", clients);
+                clients.clear();
+            }
+        }
+        List<Long> ids = clientIds();
+        List<Object[]> directors = new ArrayList<>();
+        List<Object[]> categories = new ArrayList<>();
+        for (Long id : ids) {
+            for (String director : sampleDirectors()) {
+                directors.add(new Object[]{id, director});
+            }
+            for (String category : sampleCategories()) {
+                categories.add(new Object[]{id, category});
+            }
+            if (directors.size() >= BATCH_SIZE) {
+                insertSubscriptions(directors, categories);
+            }
+        }
+        insertSubscriptions(directors, categories);
+        return ids;
+    }
+
+    /**
+     * Saves {@code count} films created today and not yet announced.
+     */
+    public void generateFilms(int count) {
+        List<Film> films = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            films.add(Film.builder()
+                    .title("Load Film " + i)
+                    .director(director(pick(directorWeights)))
+                    .category(category(pick(categoryWeights)))
+                    .createdDate(LocalDate.now())
+                    .build());
+        }
+        filmRepository.saveAll(films);
+    }
+
+    public List<Long> clientIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM client WHERE mail LIKE ? ORDER BY id", Long.class,
+                MAIL_PREFIX + "%");
+    }
+
+    public synchronized Set<String> sampleDirectors() {
+        int count = 1;
+        while (count < MAX_DIRECTORS_PER_CLIENT && random.nextBoolean()) {
+            count++;
+        }
+        Set<String> directors = new HashSet<>();
+        while (directors.size() < Math.min(count, directorWeights.length)) {
+            directors.add(director(pick(directorWeights)));
+        }
+        return directors;
+    }
+
+    public synchronized Set<String> sampleCategories() {
+        double roll = random.nextDouble();
+        int count = roll < 0.3 ? 0 : roll < 0.8 ? 1 : 2;
+        Set<String> categories = new HashSet<>();
+        while (categories.size() < Math.min(count, categoryWeights.length)) {
+            categories.add(category(pick(categoryWeights)));
+        }
+        return categories;
+    }
+
+    private void insertSubscriptions(List<Object[]> directors, List<Object[]> categories) {
+        if (!directors.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO subscription_director (client_id, director) VALUES (?, ?)", directors);
+            directors.clear();
+        }
+        if (!categories.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO subscription_category (client_id, category) VALUES (?, ?)", categories);
+            categories.clear();
+        }
+    }
+
+    private int pick(double[] cdf) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    private static String director(int rank) {
+        return "Director " + rank;
+    }
+
+    private static String category(int rank) {
+        return "Category " + rank;
+    }
+
+    private static double[] zipfCdf(int size, double exponent) {
+        double[] cdf = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cdf[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cdf[rank] /= total;
+        }
+        return cdf;
+    }
+}
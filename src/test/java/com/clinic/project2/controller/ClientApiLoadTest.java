@@ -0,0 +1,170 @@
+package com.clinic.project2.controller;
+
+import com.clinic.project2.SyntheticDataGenerator;
+import com.clinic.project2.model.command.CreateClientCommand;
+import com.clinic.project2.model.command.CreateSubscriptionCommand;
+import com.clinic.project2.model.command.RemoveSubscriptionCommand;
+import com.clinic.project2.model.command.SubscriptionBatchCommand;
+import com.clinic.project2.model.command.SubscriptionChangeCommand;
+import com.clinic.project2.repository.FilmRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives registration and subscription traffic against the REST API from {@code load.users} concurrent users
+ * and reports throughput and latency per endpoint. Run with {@code mvn test -Pload-test}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "email.outbox.poll-interval-ms=3600000"
+})
+class ClientApiLoadTest {
+
+    private static final int USERS = Integer.getInteger("load.users", 16);
+    private static final int REGISTRATIONS = Integer.getInteger("load.registrations", 2_000);
+    private static final int SUBSCRIPTION_UPDATES = Integer.getInteger("load.subscription-updates", 4_000);
+    private static final int BATCH_CHANGES = 50;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    void loadRegistrationAndSubscriptionTraffic() throws Exception {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(jdbcTemplate, filmRepository, 42);
+        generator.clear();
+
+        Phase registration = run("POST /clients", REGISTRATIONS, i -> request("POST", "",
+                CreateClientCommand.builder()
+                        .firstName("Load")
+                        .lastName("Client " + i)
+                        .mail(SyntheticDataGenerator.MAIL_PREFIX + i + "@example.com")
+                        .password("password")
+                        .build()));
+        List<Long> clientIds = generator.clientIds();
+        assertEquals(REGISTRATIONS, clientIds.size());
+
+        Random random = new Random(42);
+        long[] targets = random.longs(SUBSCRIPTION_UPDATES, 0, clientIds.size()).map(i -> clientIds.get((int) i)).toArray();
+        Phase additions = run("PUT add-subscription", SUBSCRIPTION_UPDATES, i -> request("PUT",
+                "/" + targets[i] + "/add-subscription", CreateSubscriptionCommand.builder()
+                        .directors(generator.sampleDirectors())
+                        .categories(generator.sampleCategories())
+                        .build()));
+        Phase removals = run("PUT remove-subscription", SUBSCRIPTION_UPDATES / 4, i -> request("PUT",
+                "/" + targets[i] + "/remove-subscription", RemoveSubscriptionCommand.builder()
+                        .directors(generator.sampleDirectors())
+                        .categories(generator.sampleCategories())
+                        .build()));
+        Phase batches = run("PUT subscriptions", SUBSCRIPTION_UPDATES / BATCH_CHANGES, i -> {
+            List<SubscriptionChangeCommand> changes = new ArrayList<>(BATCH_CHANGES);
+            for (int change = 0; change < BATCH_CHANGES; change++) {
+                changes.add(SubscriptionChangeCommand.builder()
+                        .clientId(targets[(i * BATCH_CHANGES + change) % targets.length])
+                        .addDirectors(generator.sampleDirectors())
+                        .removeCategories(generator.sampleCategories())
+                        .build());
+            }
+            return request("PUT", "/subscriptions", SubscriptionBatchCommand.builder().changes(changes).build());
+        });
+
+        for (Phase phase : List.of(registration, additions, removals, batches)) {
+            System.out.println(phase);
+        }
+        for (Phase phase : List.of(registration, additions, removals, batches)) {
+            assertEquals(0, phase.errors, phase.name + " failed requests");
+        }
+    }
+
+    private HttpRequest request(String method, String path, Object body) {
+        try {
+            return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/clients" + path))
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Phase run(String name, int requests, IntFunction<HttpRequest> requestFactory) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService users = Executors.newFixedThreadPool(USERS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int user = 0; user < USERS; user++) {
+                running.add(users.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        HttpRequest request = requestFactory.apply(i);
+                        long sent = System.nanoTime();
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[i] = System.nanoTime() - sent;
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> user : running) {
+                user.get();
+            }
+        } finally {
+            users.shutdown();
+        }
+        return new Phase(name, latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    private record Phase(String name, long[] latencies, int errors, long elapsedNanos) {
+
+        @Override
+        public String toString() {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return String.format("%-24s %,7d requests %,5d errors %,8.0f req/s  p50 %6.1f ms  p95 %6.1f ms  p99 %6.1f ms",
+                    name, sorted.length, errors, sorted.length / (elapsedNanos / 1_000_000_000.0),
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99));
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1_000_000.0;
+        }
+    }
+}
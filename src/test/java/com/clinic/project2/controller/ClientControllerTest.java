@@ -5,23 +5,32 @@ import com.clinic.project2.model.Client;
 import com.clinic.project2.model.command.CreateClientCommand;
 import com.clinic.project2.model.command.CreateSubscriptionCommand;
 import com.clinic.project2.model.command.RemoveSubscriptionCommand;
+import com.clinic.project2.model.command.SubscriptionBatchCommand;
+import com.clinic.project2.model.command.SubscriptionChangeCommand;
+import com.clinic.project2.model.dto.ClientContactDto;
 import com.clinic.project2.model.dto.ClientDto;
 import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.EmailOutboxRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
@@ -38,6 +47,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 class ClientControllerTest {
 
+    private static final Pattern CONFIRMATION_TOKEN = Pattern.compile("confirm\\?token=([\\w-]+)");
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -47,6 +58,12 @@ class ClientControllerTest {
     @Autowired
     private ClientRepository clientRepository;
 
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @BeforeEach
     public void clearDatabase() {
         clientRepository.deleteAll();
@@ -152,7 +169,7 @@ class ClientControllerTest {
 
         Client savedClientBeforeSubscription = clientRepository.findByMail(clientDto.getMail());
         mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/clients/confirm")
-                        .param("token", savedClientBeforeSubscription.getVerificationToken()))
+                        .param("token", confirmationToken(clientDto.getMail())))
                 .andExpect(MockMvcResultMatchers.status().isOk());
 
         CreateSubscriptionCommand subscriptionCommand = CreateSubscriptionCommand.builder()
@@ -167,7 +184,7 @@ class ClientControllerTest {
                         .content(subscriptionRequestBody))
                 .andExpect(MockMvcResultMatchers.status().isOk());
 
-        Client savedClientAfterSubscription = clientRepository.findById(savedClientBeforeSubscription.getId()).orElseThrow(() -> new AssertionError("Client not found"));
+        Client savedClientAfterSubscription = findWithSubscriptions(savedClientBeforeSubscription.getId());
         assertEquals(1, savedClientAfterSubscription.getSubscriptionDirector().size());
         assertEquals(1, savedClientAfterSubscription.getSubscriptionCategory().size());
         assertTrue(savedClientAfterSubscription.getSubscriptionDirector().contains("George Lucas"));
@@ -197,7 +214,7 @@ class ClientControllerTest {
         Client savedClientBeforeSubscription = clientRepository.findByMail(clientDto.getMail());
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/clients/confirm")
-                        .param("token", savedClientBeforeSubscription.getVerificationToken()))
+                        .param("token", confirmationToken(clientDto.getMail())))
                 .andExpect(MockMvcResultMatchers.status().isOk());
 
         RemoveSubscriptionCommand removeSubscriptionCommand = RemoveSubscriptionCommand.builder()
@@ -211,14 +228,108 @@ class ClientControllerTest {
                         .content(removeSubscriptionRequestBody))
                 .andExpect(MockMvcResultMatchers.status().isOk());
 
-        Client savedClientAfterRemovingSubscription = clientRepository.findById(savedClientBeforeSubscription.getId()).orElseThrow(() -> new AssertionError("Client not found"));
+        Client savedClientAfterRemovingSubscription = findWithSubscriptions(savedClientBeforeSubscription.getId());
         assertTrue(savedClientAfterRemovingSubscription.getSubscriptionDirector().isEmpty());
         assertTrue(savedClientAfterRemovingSubscription.getSubscriptionCategory().isEmpty());
     }
 
+    @Test
+    void givenManyClients_whenApplySubscriptionChanges_thenEachClientUpdatedAndUnknownReported() throws Exception {
+        Client first = clientRepository.save(Client.builder()
+                .mail("first@gmil.com")
+                .active(true)
+                .subscriptionDirector(Set.of("Tolkien"))
+                .subscriptionCategory(Set.of("Drama"))
+                .build());
+        Client second = clientRepository.save(Client.builder()
+                .mail("second@gmil.com")
+                .active(true)
+                .build());
+        SubscriptionBatchCommand command = SubscriptionBatchCommand.builder()
+                .changes(List.of(
+                        SubscriptionChangeCommand.builder().clientId(first.getId())
+                                .addDirectors(Set.of("George Lucas", "Tolkien"))
+                                .removeCategories(Set.of("Drama"))
+                                .build(),
+                        SubscriptionChangeCommand.builder().clientId(second.getId())
+                                .addCategories(Set.of("Fantasy"))
+                                .build(),
+                        SubscriptionChangeCommand.builder().clientId(second.getId() + 1000)
+                                .addCategories(Set.of("Fantasy"))
+                                .build()))
+                .build();
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/clients/subscriptions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(command)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied", is(2)))
+                .andExpect(jsonPath("$.unknownClientIds", hasSize(1)));
+
+        Client firstAfter = findWithSubscriptions(first.getId());
+        assertEquals(Set.of("George Lucas", "Tolkien"), firstAfter.getSubscriptionDirector());
+        assertTrue(firstAfter.getSubscriptionCategory().isEmpty());
+        Client secondAfter = findWithSubscriptions(second.getId());
+        assertEquals(Set.of("Fantasy"), secondAfter.getSubscriptionCategory());
+    }
+
+    @Test
+    void givenChangeWithoutClientId_whenApplySubscriptionChanges_thenBadRequest() throws Exception {
+        SubscriptionBatchCommand command = SubscriptionBatchCommand.builder()
+                .changes(List.of(SubscriptionChangeCommand.builder().addCategories(Set.of("Fantasy")).build()))
+                .build();
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/clients/subscriptions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(command)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testGetNonExistingEndpoint_ShouldReturnNotFound() throws Exception {
         mockMvc.perform(get("/api/v1/non-existing-endpoint"))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFindActiveClientsInRange_ShouldReturnActiveContactsWithoutLoadingSubscriptions() {
+        Client active = clientRepository.save(Client.builder()
+                .mail("active@gmil.com")
+                .active(true)
+                .subscriptionDirector(Set.of("George Lucas"))
+                .subscriptionCategory(Set.of("Fantasy"))
+                .build());
+        clientRepository.save(Client.builder()
+                .mail("inactive@gmil.com")
+                .active(false)
+                .build());
+
+        List<ClientContactDto> contacts = clientRepository.findActiveClientsInRange(0L, Long.MAX_VALUE, Limit.of(10));
+
+        assertEquals(1, contacts.size());
+        assertEquals(active.getId(), contacts.get(0).getId());
+        assertEquals("active@gmil.com", contacts.get(0).getMail());
+        Client loaded = clientRepository.findByMail("active@gmil.com");
+        assertFalse(Hibernate.isInitialized(loaded.getSubscriptionDirector()));
+        assertFalse(Hibernate.isInitialized(loaded.getSubscriptionCategory()));
+    }
+
+    private Client findWithSubscriptions(Long id) {
+        return transactionTemplate.execute(status -> {
+            Client client = clientRepository.findById(id).orElseThrow(() -> new AssertionError("Client not found"));
+            Hibernate.initialize(client.getSubscriptionDirector());
+            Hibernate.initialize(client.getSubscriptionCategory());
+            return client;
+        });
+    }
+
+    private String confirmationToken(String mail) {
+        return emailOutboxRepository.findAll().stream()
+                .filter(email -> email.getRecipient().equals(mail))
+                .map(email -> CONFIRMATION_TOKEN.matcher(email.getBody()))
+                .filter(Matcher::find)
+                .map(matcher -> matcher.group(1))
+                .reduce((first, second) -> second)
+                .orElseThrow(() -> new AssertionError("Confirmation email not found"));
+    }
+}
@@ -20,11 +20,14 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -175,4 +178,127 @@ class FilmControllerTest {
         assertEquals("Film 1", unprocessedFilms.get(0).getTitle());
         assertEquals("Film 2", unprocessedFilms.get(1).getTitle());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testMarkProcessed_ShouldUpdateOnlyGivenFilms() {
+        Film film1 = filmRepository.save(Film.builder()
+                .title("Film 1")
+                .createdDate(LocalDate.now())
+                .build());
+        Film film2 = filmRepository.save(Film.builder()
+                .title("Film 2")
+                .createdDate(LocalDate.now())
+                .build());
+
+        int updated = filmRepository.markProcessed(List.of(film1.getId()), LocalDate.now());
+
+        assertEquals(1, updated);
+        List<Film> unprocessedFilms = filmRepository.findUnprocessedBooksAddedRecently(LocalDate.now().minusDays(2));
+        assertEquals(1, unprocessedFilms.size());
+        assertEquals(film2.getId(), unprocessedFilms.get(0).getId());
+    }
+
+    @Test
+    void testFindAll_CursorPagination_ShouldReturnFilteredPagesInIdOrder() throws Exception {
+        Film first = filmRepository.save(Film.builder().title("Star Wars").director("George Lucas").category("Sci-Fi").build());
+        filmRepository.save(Film.builder().title("Hobbit").director("Peter Jackson").category("Fantasy").build());
+        Film third = filmRepository.save(Film.builder().title("THX 1138").director("George Lucas").category("Sci-Fi").build());
+
+        MvcResult firstPage = mockMvc.perform(get("/api/v1/films")
+                        .param("limit", "1")
+                        .param("director", "George Lucas"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.films", hasSize(1)))
+                .andExpect(jsonPath("$.films[0].title", is("Star Wars")))
+                .andReturn();
+        long cursor = objectMapper.readTree(firstPage.getResponse().getContentAsString()).get("nextCursor").asLong();
+        assertEquals(first.getId(), cursor);
+
+        mockMvc.perform(get("/api/v1/films")
+                        .param("after", String.valueOf(cursor))
+                        .param("limit", "1")
+                        .param("director", "George Lucas"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.films[0].id", is(third.getId().intValue())))
+                .andExpect(jsonPath("$.nextCursor", is(third.getId().intValue())));
+
+        mockMvc.perform(get("/api/v1/films")
+                        .param("after", String.valueOf(third.getId()))
+                        .param("director", "George Lucas"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.films", hasSize(0)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void testFindAll_NdjsonAccepted_ShouldStreamOneFilmPerLine() throws Exception {
+        filmRepository.save(Film.builder().title("Star Wars").director("George Lucas").category("Sci-Fi").build());
+        filmRepository.save(Film.builder().title("Hobbit").director("Peter Jackson").category("Fantasy").build());
+        filmRepository.save(Film.builder().title("Willow").director("Ron Howard").category("Fantasy").build());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/films")
+                        .param("category", "Fantasy")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        List<String> lines = body.lines().toList();
+        assertEquals(2, lines.size());
+        assertEquals("Hobbit", objectMapper.readTree(lines.get(0)).get("title").asText());
+        assertEquals("Willow", objectMapper.readTree(lines.get(1)).get("title").asText());
+    }
+
+    @Test
+    void testImportCsv_MixedRows_ShouldInsertValidRowsAndReportInvalidOnes() throws Exception {
+        String csv = """
+                title,director,category
+                Star Wars,George Lucas,Sci-Fi
+                "Hobbit: An Unexpected Journey",Peter Jackson,Fantasy
+                Willow,,Fantasy
+                """;
+
+        mockMvc.perform(post("/api/v1/films/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.rejected", is(1)))
+                .andExpect(jsonPath("$.errors[0].row", is(4)))
+                .andExpect(jsonPath("$.errors[0].message", is("Director cannot be blank")));
+
+        List<Film> films = filmRepository.findAll();
+        assertEquals(2, films.size());
+        assertTrue(films.stream().anyMatch(film -> film.getTitle().equals("Hobbit: An Unexpected Journey")));
+    }
+
+    @Test
+    void testImportNdjson_MalformedLine_ShouldReportRowAndImportRest() throws Exception {
+        String ndjson = """
+                {"title":"Star Wars","director":"George Lucas","category":"Sci-Fi"}
+                {"title":
+                {"title":"Willow","director":"Ron Howard","category":"Fantasy"}
+                """;
+
+        mockMvc.perform(post("/api/v1/films/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.errors[0].row", is(2)));
+
+        assertEquals(2, filmRepository.count());
+    }
+
+    @Test
+    void testImportCsv_MissingColumn_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/api/v1/films/import")
+                        .contentType("text/csv")
+                        .content("title,director\nStar Wars,George Lucas\n"))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(0, filmRepository.count());
+    }
+}
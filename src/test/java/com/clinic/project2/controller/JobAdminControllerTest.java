@@ -0,0 +1,86 @@
+package com.clinic.project2.controller;
+
+import com.clinic.project2.model.JobShard;
+import com.clinic.project2.model.JobShardStatus;
+import com.clinic.project2.repository.JobShardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class JobAdminControllerTest {
+
+    private static final String JOB = "film-notifications";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JobShardRepository jobShardRepository;
+
+    @BeforeEach
+    void clearDatabase() {
+        jobShardRepository.deleteAll();
+    }
+
+    @Test
+    void testProgress_RunningJob_ProgressAndEtaReturned() throws Exception {
+        LocalDateTime startedAt = LocalDateTime.now().minusMinutes(4);
+        jobShardRepository.saveAll(List.of(
+                shard(0, 0, 100, JobShardStatus.DONE, "", 100, startedAt),
+                shard(1, 100, 200, JobShardStatus.RUNNING, "175:200", 75, startedAt.plusMinutes(1))));
+
+        mockMvc.perform(get("/api/v1/admin/jobs/" + JOB + "/progress"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("RUNNING")))
+                .andExpect(jsonPath("$.shards", is(2)))
+                .andExpect(jsonPath("$.doneShards", is(1)))
+                .andExpect(jsonPath("$.runningShards", is(1)))
+                .andExpect(jsonPath("$.scannedClients", is(175)))
+                .andExpect(jsonPath("$.progress", closeTo(0.875, 1e-9)))
+                .andExpect(jsonPath("$.remainingSeconds", notNullValue()))
+                .andExpect(jsonPath("$.estimatedCompletion", notNullValue()));
+    }
+
+    @Test
+    void testProgress_NoRunOnDate_NotStarted() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/jobs/" + JOB + "/progress").param("runDate", "2020-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("NOT_STARTED")))
+                .andExpect(jsonPath("$.shards", is(0)))
+                .andExpect(jsonPath("$.remainingSeconds", nullValue()));
+    }
+
+    private static JobShard shard(int index, long after, long upTo, JobShardStatus status, String pendingRanges,
+                                  long scannedClients, LocalDateTime startedAt) {
+        return JobShard.builder()
+                .jobName(JOB)
+                .runDate(LocalDate.now())
+                .shardIndex(index)
+                .rangeAfter(after)
+                .rangeUpTo(upTo)
+                .status(status)
+                .owner("node")
+                .leaseUntil(status == JobShardStatus.RUNNING ? LocalDateTime.now().plusMinutes(1) : null)
+                .pendingRanges(pendingRanges)
+                .scannedClients(scannedClients)
+                .startedAt(startedAt)
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.clinic.project2.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testMetrics_NotificationPipeline_StagesExposed() throws Exception {
+        mockMvc.perform(get("/actuator/metrics/notification.run.stage"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.availableTags[?(@.tag == 'stage')].values[*]",
+                        hasItems("film-query", "matching", "client-scan", "send")));
+    }
+
+    @Test
+    void testMetrics_EmailDelivery_CountersAndSmtpLatencyExposed() throws Exception {
+        mockMvc.perform(get("/actuator/metrics/email.delivery.messages"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.availableTags[?(@.tag == 'result')].values[*]", hasItems("sent", "failed")));
+        mockMvc.perform(get("/actuator/metrics/email.smtp.send"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/email.delivery.executor.active"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,75 @@
+package com.clinic.project2.mapper;
+
+import com.clinic.project2.model.Client;
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.dto.ClientDto;
+import com.clinic.project2.model.dto.FilmDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mapping a page of clients or films to their DTOs.
+ */
+public class MapperJmh {
+
+    @State(Scope.Benchmark)
+    public static class Clients {
+
+        @Param({"1000", "100000", "1000000"})
+        private int clients;
+
+        private List<Client> entities;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            entities = new ArrayList<>(clients);
+            for (long id = 1; id <= clients; id++) {
+                entities.add(Client.builder()
+                        .id(id)
+                        .firstName("John")
+                        .lastName("Mark " + id)
+                        .mail("client" + id + "@example.com")
+                        .build());
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Films {
+
+        @Param({"10", "1000", "10000"})
+        private int films;
+
+        private List<Film> entities;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            entities = new ArrayList<>(films);
+            for (long id = 1; id <= films; id++) {
+                entities.add(Film.builder()
+                        .id(id)
+                        .title("Film " + id)
+                        .director("Director " + id % 100)
+                        .category("Category " + id % 20)
+                        .build());
+            }
+        }
+    }
+
+    @Benchmark
+    public List<ClientDto> mapClientsToDto(Clients state) {
+        return state.entities.stream().map(ClientMapper::mapToDto).toList();
+    }
+
+    @Benchmark
+    public List<FilmDto> mapFilmsToDto(Films state) {
+        return state.entities.stream().map(FilmMapper::mapToDto).toList();
+    }
+}
@@ -0,0 +1,76 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.exception.EmailAlreadyUsedException;
+import com.clinic.project2.model.command.CreateClientCommand;
+import com.clinic.project2.repository.ClientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ClientRegistrationConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @BeforeEach
+    void clearDatabase() {
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void testAddClient_SameMailRegisteredConcurrently_OnlyOneAccepted() throws Exception {
+        CreateClientCommand command = CreateClientCommand.builder()
+                .firstName("John")
+                .lastName("Mark")
+                .mail("race@example.com")
+                .password("password")
+                .build();
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    clientService.addClient(command);
+                    accepted.incrementAndGet();
+                } catch (EmailAlreadyUsedException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(1, accepted.get());
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(1, clientRepository.findAll().stream()
+                .filter(client -> client.getMail().equals("race@example.com"))
+                .count());
+    }
+}
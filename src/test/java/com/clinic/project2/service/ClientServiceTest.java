@@ -6,7 +6,10 @@ import com.clinic.project2.model.Client;
 import com.clinic.project2.model.command.CreateClientCommand;
 import com.clinic.project2.model.command.CreateSubscriptionCommand;
 import com.clinic.project2.model.command.RemoveSubscriptionCommand;
+import com.clinic.project2.model.command.SubscriptionBatchCommand;
+import com.clinic.project2.model.command.SubscriptionChangeCommand;
 import com.clinic.project2.model.dto.ClientDto;
+import com.clinic.project2.model.dto.SubscriptionBatchResultDto;
 import com.clinic.project2.repository.ClientRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,14 +18,20 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +46,15 @@ public class ClientServiceTest {
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private SubscriptionIndex subscriptionIndex;
+
+    @Mock
+    private RegisteredMailFilter registeredMailFilter;
+
+    @Mock
+    private VerificationTokenService verificationTokenService;
+
     @Captor
     private ArgumentCaptor<Client> clientArgumentCaptor;
 
@@ -55,16 +73,18 @@ public class ClientServiceTest {
                 .mail("john.mark@gmil.com")
                 .password("password")
                 .build();
-        when(clientRepository.findByMail(command.getMail())).thenReturn(null);
-        when(clientRepository.save(any(Client.class))).thenReturn(expectedClient);
+        when(registeredMailFilter.mightContain(command.getMail())).thenReturn(false);
+        when(clientRepository.saveAndFlush(any(Client.class))).thenReturn(expectedClient);
+        when(verificationTokenService.issue(any())).thenReturn("token");
         ClientDto savedClient = clientService.addClient(command);
-        verify(clientRepository).save(clientArgumentCaptor.capture());
+        verify(clientRepository).saveAndFlush(clientArgumentCaptor.capture());
+        verify(clientRepository, never()).existsByMail(any());
+        verify(registeredMailFilter).put(command.getMail());
         Client savedClientEntity = clientArgumentCaptor.getValue();
         assertEquals(command.getFirstName(), savedClientEntity.getFirstName());
         assertEquals(command.getLastName(), savedClientEntity.getLastName());
         assertEquals(command.getMail(), savedClientEntity.getMail());
-        assertNotNull(savedClientEntity.getVerificationToken());
-        verify(emailService).sendEmailValidationRequest(savedClientEntity);
+        verify(emailService).sendEmailValidationRequest(savedClientEntity, "token");
     }
 
     @Test
@@ -76,14 +96,13 @@ public class ClientServiceTest {
                 .mail("john.mark@gmil.com")
                 .password("password")
                 .build();
-        when(clientRepository.findByVerificationToken(token)).thenReturn(client);
+        when(verificationTokenService.consume(token)).thenReturn(Optional.of(1L));
+        when(clientRepository.findById(1L)).thenReturn(Optional.of(client));
         String confirmationResult = clientService.confirmRegistration(token);
         assertEquals("Your account has been successfully verified!", confirmationResult);
         assertTrue(client.isActive());
-        assertNull(client.getVerificationToken());
         verify(clientRepository).save(clientArgumentCaptor.capture());
         Client updatedClient = clientArgumentCaptor.getValue();
-        assertNull(updatedClient.getVerificationToken(), "Verification token should be null after confirmation");
         assertTrue(updatedClient.isActive(), "Client should be active after confirmation");
     }
 
@@ -95,12 +114,53 @@ public class ClientServiceTest {
                 .mail("john.mark@gmil.com")
                 .password("password")
                 .build();
-        when(clientRepository.findByMail(command.getMail())).thenReturn(new Client());
+        when(registeredMailFilter.mightContain(command.getMail())).thenReturn(true);
+        when(clientRepository.existsByMail(command.getMail())).thenReturn(true);
         EmailAlreadyUsedException exception = assertThrows(
                 EmailAlreadyUsedException.class,
                 () -> clientService.addClient(command)
         );
         assertEquals("An account with this email address already exists.", exception.getMessage());
+        verify(clientRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    public void testAddClient_UniqueIndexViolated_ThrowsException() {
+        CreateClientCommand command = CreateClientCommand.builder()
+                .firstName("John")
+                .lastName("Mark")
+                .mail("john.mark@gmil.com")
+                .password("password")
+                .build();
+        when(registeredMailFilter.mightContain(command.getMail())).thenReturn(false);
+        when(clientRepository.saveAndFlush(any(Client.class))).thenThrow(constraintViolation("UK_CLIENT_MAIL_INDEX_8"));
+        EmailAlreadyUsedException exception = assertThrows(
+                EmailAlreadyUsedException.class,
+                () -> clientService.addClient(command)
+        );
+        assertEquals("An account with this email address already exists.", exception.getMessage());
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    public void testAddClient_OtherConstraintViolated_ExceptionRethrown() {
+        CreateClientCommand command = CreateClientCommand.builder()
+                .firstName("John")
+                .lastName("Mark")
+                .mail("john.mark@gmil.com")
+                .password("password")
+                .build();
+        when(registeredMailFilter.mightContain(command.getMail())).thenReturn(false);
+        DataIntegrityViolationException violation = constraintViolation("ck_client_first_name");
+        when(clientRepository.saveAndFlush(any(Client.class))).thenThrow(violation);
+
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class, () -> clientService.addClient(command)));
+        verifyNoInteractions(emailService);
+    }
+
+    private static DataIntegrityViolationException constraintViolation(String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", new SQLException(), constraintName));
     }
 
     @Test
@@ -133,10 +193,68 @@ public class ClientServiceTest {
         assertEquals("Client with id 1 not found", exception.getMessage());
     }
 
+    @Test
+    public void testAddSubscription_ExistingClient_OnlyNewTermsInserted() {
+        Long clientId = 1L;
+        when(clientRepository.findById(clientId)).thenReturn(Optional.of(Client.builder().id(clientId).mail("john.mark@gmail.com").build()));
+        CreateSubscriptionCommand command = CreateSubscriptionCommand.builder()
+                .directors(Set.of("George Lucas"))
+                .categories(Set.of("Fantasy"))
+                .build();
+
+        ClientDto result = clientService.addFilmSubscription(clientId, command);
+
+        assertEquals("john.mark@gmail.com", result.getMail());
+        verify(clientRepository).insertDirectorSubscription(clientId, "George Lucas");
+        verify(clientRepository).insertCategorySubscription(clientId, "Fantasy");
+        verify(clientRepository, never()).save(any());
+        verify(subscriptionIndex).subscribe(clientId, Set.of("George Lucas"), Set.of("Fantasy"));
+    }
+
+    @Test
+    public void testRemoveSubscription_ExistingClient_OnlyGivenTermsDeleted() {
+        Long clientId = 1L;
+        when(clientRepository.findById(clientId)).thenReturn(Optional.of(Client.builder().id(clientId).build()));
+        RemoveSubscriptionCommand command = RemoveSubscriptionCommand.builder()
+                .directors(Set.of("George Lucas"))
+                .build();
+
+        clientService.removeFilmSubscription(clientId, command);
+
+        verify(clientRepository).removeDirectorSubscriptions(clientId, Set.of("George Lucas"));
+        verify(clientRepository, never()).removeCategorySubscriptions(any(), any());
+        verify(clientRepository, never()).save(any());
+        verify(subscriptionIndex).unsubscribe(clientId, Set.of("George Lucas"), null);
+    }
+
+    @Test
+    public void testApplySubscriptionChanges_UnknownClient_SkippedAndReported() {
+        SubscriptionBatchCommand command = SubscriptionBatchCommand.builder()
+                .changes(List.of(
+                        SubscriptionChangeCommand.builder().clientId(1L)
+                                .addDirectors(Set.of("George Lucas"))
+                                .removeCategories(Set.of("Drama"))
+                                .build(),
+                        SubscriptionChangeCommand.builder().clientId(2L)
+                                .addCategories(Set.of("Fantasy"))
+                                .build()))
+                .build();
+        when(clientRepository.findExistingIds(Set.of(1L, 2L))).thenReturn(List.of(1L));
+
+        SubscriptionBatchResultDto result = clientService.applySubscriptionChanges(command);
+
+        assertEquals(1, result.getApplied());
+        assertEquals(List.of(2L), result.getUnknownClientIds());
+        verify(clientRepository).removeCategorySubscriptions(1L, Set.of("Drama"));
+        verify(clientRepository).insertDirectorSubscription(1L, "George Lucas");
+        verify(clientRepository, never()).insertCategorySubscription(any(), any());
+        verify(subscriptionIndex).subscribe(1L, Set.of("George Lucas"), null);
+    }
+
     @Test
     public void testConfirmRegistration_TokenNotFound_ThrowsException() {
         String token = "invalidToken";
-        when(clientRepository.findByVerificationToken(token)).thenReturn(null);
+        when(verificationTokenService.consume(token)).thenReturn(Optional.empty());
 
         ClientNotFoundException exception = assertThrows(
                 ClientNotFoundException.class,
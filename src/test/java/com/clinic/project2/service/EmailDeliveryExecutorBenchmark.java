@@ -0,0 +1,54 @@
+package com.clinic.project2.service;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the platform-thread pool with virtual threads for delivery tasks that block on simulated SMTP
+ * round trips. Run with {@code mvn test -Pbenchmark}; the virtual-thread run needs Java 21+.
+ */
+class EmailDeliveryExecutorBenchmark {
+
+    private static final int TASKS = Integer.getInteger("benchmark.tasks", 2000);
+    private static final int PLATFORM_THREADS = Integer.getInteger("benchmark.platform-threads", 50);
+    private static final int MAX_CONCURRENCY = Integer.getInteger("benchmark.max-concurrency", 500);
+    private static final long SMTP_ROUND_TRIP_MS = Long.getLong("benchmark.round-trip-ms", 20);
+
+    @Test
+    void benchmarkPlatformPoolAgainstVirtualThreads() {
+        double platformRate = run(new EmailDeliveryExecutor(EmailDeliveryExecutor.Mode.PLATFORM,
+                PLATFORM_THREADS, TASKS, PLATFORM_THREADS, 60_000));
+        System.out.printf("Platform pool (%d threads):          %.0f tasks/s%n", PLATFORM_THREADS, platformRate);
+
+        Assumptions.assumeTrue(EmailDeliveryExecutor.virtualThreadsSupported(), "Virtual threads need Java 21+");
+        double virtualRate = run(new EmailDeliveryExecutor(EmailDeliveryExecutor.Mode.VIRTUAL,
+                PLATFORM_THREADS, TASKS, MAX_CONCURRENCY, 60_000));
+        System.out.printf("Virtual threads (%d SMTP permits):  %.0f tasks/s%n", MAX_CONCURRENCY, virtualRate);
+    }
+
+    private static double run(EmailDeliveryExecutor executor) {
+        List<CompletableFuture<Integer>> tasks = new ArrayList<>(TASKS);
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            tasks.add(executor.supplyAsync(() -> {
+                try {
+                    Thread.sleep(SMTP_ROUND_TRIP_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }));
+        }
+        int completed = tasks.stream().mapToInt(CompletableFuture::join).sum();
+        double rate = TASKS / ((System.nanoTime() - start) / 1_000_000_000.0);
+        executor.shutdown();
+        assertEquals(TASKS, completed);
+        return rate;
+    }
+}
@@ -0,0 +1,149 @@
+package com.clinic.project2.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailDeliveryExecutorTest {
+
+    private EmailDeliveryExecutor emailDeliveryExecutor;
+
+    @AfterEach
+    void tearDown() {
+        if (emailDeliveryExecutor != null) {
+            emailDeliveryExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void testSupplyAsync_ManyTasks_ConcurrencyCappedBySemaphore() {
+        emailDeliveryExecutor = new EmailDeliveryExecutor(EmailDeliveryExecutor.Mode.PLATFORM, 8, 100, 2, 5000);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<CompletableFuture<Integer>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            tasks.add(emailDeliveryExecutor.supplyAsync(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(10);
+                running.decrementAndGet();
+                return 1;
+            }));
+        }
+
+        assertEquals(20, tasks.stream().mapToInt(CompletableFuture::join).sum());
+        assertEquals(2, peak.get());
+    }
+
+    @Test
+    void testSupplyAsync_QueueFull_TaskRejectedAndCounted() throws Exception {
+        emailDeliveryExecutor = new EmailDeliveryExecutor(EmailDeliveryExecutor.Mode.PLATFORM, 1, 1, 1, 5000);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> blocking = emailDeliveryExecutor.supplyAsync(() -> {
+            await(release);
+            return 1;
+        });
+        CompletableFuture<Integer> queued = emailDeliveryExecutor.supplyAsync(() -> 1);
+
+        CompletableFuture<Integer> rejected = emailDeliveryExecutor.supplyAsync(() -> 1);
+
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        assertEquals(1, emailDeliveryExecutor.getRejected());
+        release.countDown();
+        assertEquals(2, blocking.get(5, TimeUnit.SECONDS) + queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testSupplyAsync_NoPermitInTime_TaskRejected() {
+        emailDeliveryExecutor = new EmailDeliveryExecutor(EmailDeliveryExecutor.Mode.PLATFORM, 2, 10, 1, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        emailDeliveryExecutor.supplyAsync(() -> {
+            await(release);
+            return 1;
+        });
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> emailDeliveryExecutor.supplyAsync(() -> 1).join());
+
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        assertEquals(1, emailDeliveryExecutor.getRejected());
+        release.countDown();
+    }
+
+    @Test
+    void testConstructor_VirtualModeRequested_FallsBackWhenUnsupported() {
+        emailDeliveryExecutor = new EmailDeliveryExecutor(EmailDeliveryExecutor.Mode.VIRTUAL, 1, 10, 1, 1000);
+
+        EmailDeliveryExecutor.Mode expected = EmailDeliveryExecutor.virtualThreadsSupported()
+                ? EmailDeliveryExecutor.Mode.VIRTUAL : EmailDeliveryExecutor.Mode.PLATFORM;
+        assertEquals(expected, emailDeliveryExecutor.getMode());
+        assertEquals(1, emailDeliveryExecutor.supplyAsync(() -> 1).join());
+    }
+
+    @Test
+    void testModeParse_MixedCaseWithWhitespace_ReturnsMode() {
+        assertEquals(EmailDeliveryExecutor.Mode.VIRTUAL, EmailDeliveryExecutor.Mode.parse(" Virtual "));
+        assertEquals(EmailDeliveryExecutor.Mode.PLATFORM, EmailDeliveryExecutor.Mode.parse("platform"));
+    }
+
+    @Test
+    void testModeParse_TurkishDefaultLocale_ParsesLowercaseI() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            assertEquals(EmailDeliveryExecutor.Mode.VIRTUAL, EmailDeliveryExecutor.Mode.parse("virtual"));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void testModeParse_UnknownValue_ReportsPropertyAndAllowedValues() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> EmailDeliveryExecutor.Mode.parse("green"));
+
+        assertEquals("Invalid email.delivery.executor-mode 'green', allowed values: platform, virtual",
+                exception.getMessage());
+    }
+
+    @Test
+    void testBindTo_QueueAndRejectionMetersRegistered() {
+        emailDeliveryExecutor = new EmailDeliveryExecutor(EmailDeliveryExecutor.Mode.PLATFORM, 1, 10, 1, 1000);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        emailDeliveryExecutor.bindTo(registry);
+
+        assertEquals(0.0, registry.get("email.delivery.executor.queued").tag("mode", "platform").gauge().value());
+        assertEquals(0.0, registry.get("email.delivery.executor.active").gauge().value());
+        assertEquals(0.0, registry.get("email.delivery.executor.rejected").functionCounter().count());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.exception.EmailNotSendException;
+import com.clinic.project2.model.EmailOutbox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxDispatcherTest {
+
+    @Mock
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private EmailService emailService;
+
+    private EmailDeliveryExecutor emailDeliveryExecutor;
+
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        emailDeliveryExecutor = new EmailDeliveryExecutor(EmailDeliveryExecutor.Mode.PLATFORM, 1, 10, 1, 1000);
+        emailOutboxDispatcher = new EmailOutboxDispatcher(emailOutboxService, emailService, emailDeliveryExecutor);
+        ReflectionTestUtils.setField(emailOutboxDispatcher, "workers", 1);
+        ReflectionTestUtils.setField(emailOutboxDispatcher, "batchSize", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        emailDeliveryExecutor.shutdown();
+    }
+
+    @Test
+    void testDispatch_ClaimedBatches_DeliveredUntilOutboxDrained() {
+        EmailOutbox first = EmailOutbox.builder().id(1L).recipient("a@gmail.com").build();
+        EmailOutbox second = EmailOutbox.builder().id(2L).recipient("b@gmail.com").build();
+        EmailOutbox third = EmailOutbox.builder().id(3L).recipient("c@gmail.com").build();
+        when(emailOutboxService.claimBatch(2)).thenReturn(List.of(first, second)).thenReturn(List.of(third));
+        when(emailService.deliver(any())).thenReturn(Map.of());
+
+        int delivered = emailOutboxDispatcher.dispatch();
+
+        assertEquals(3, delivered);
+        verify(emailOutboxService, times(2)).claimBatch(2);
+        verify(emailService).deliver(List.of(first, second));
+        verify(emailService).deliver(List.of(third));
+        verify(emailOutboxService).markSent(List.of(1L, 2L));
+        verify(emailOutboxService).markSent(List.of(3L));
+        verify(emailOutboxService, never()).markFailed(any(), any());
+    }
+
+    @Test
+    void testDispatch_DeliveryFails_EmailMarkedFailedAndOthersStillSent() {
+        EmailOutbox failing = EmailOutbox.builder().id(1L).recipient("a@gmail.com").build();
+        EmailOutbox ok = EmailOutbox.builder().id(2L).recipient("b@gmail.com").build();
+        when(emailOutboxService.claimBatch(2)).thenReturn(List.of(failing, ok)).thenReturn(List.of());
+        EmailNotSendException failure = new EmailNotSendException("Failed to send email", new RuntimeException());
+        when(emailService.deliver(List.of(failing, ok))).thenReturn(Map.of(1L, failure));
+
+        int delivered = emailOutboxDispatcher.dispatch();
+
+        assertEquals(1, delivered);
+        verify(emailOutboxService).markFailed(eq(1L), eq(failure));
+        verify(emailOutboxService).markSent(List.of(2L));
+    }
+
+    @Test
+    void testDispatch_DeliveryThrows_WholeBatchMarkedFailed() {
+        EmailOutbox first = EmailOutbox.builder().id(1L).recipient("a@gmail.com").build();
+        EmailOutbox second = EmailOutbox.builder().id(2L).recipient("b@gmail.com").build();
+        when(emailOutboxService.claimBatch(2)).thenReturn(List.of(first, second)).thenReturn(List.of());
+        IllegalStateException failure = new IllegalStateException("No session");
+        when(emailService.deliver(any())).thenThrow(failure);
+
+        assertEquals(0, emailOutboxDispatcher.dispatch());
+
+        verify(emailOutboxService).markFailed(1L, failure);
+        verify(emailOutboxService).markFailed(2L, failure);
+    }
+}
@@ -0,0 +1,159 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.EmailOutbox;
+import com.clinic.project2.model.EmailOutboxStatus;
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.command.CreateClientCommand;
+import com.clinic.project2.model.dto.FilmNotificationDto;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.EmailOutboxRepository;
+import com.clinic.project2.repository.NotificationDeliveryRepository;
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.mail.internet.MimeMessage;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.username=outbox",
+        "spring.mail.password=outbox",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "email.outbox.poll-interval-ms=3600000"
+})
+class EmailOutboxIntegrationTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withUser("outbox", "outbox"));
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private NotificationDeliveryRepository notificationDeliveryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private EmailOutboxPurger emailOutboxPurger;
+
+    @BeforeEach
+    void clearDatabase() {
+        notificationDeliveryRepository.deleteAll();
+        emailOutboxRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void testAddClient_ValidationEmailWrittenToOutboxAndDeliveredBySmtp() throws Exception {
+        clientService.addClient(CreateClientCommand.builder()
+                .firstName("John")
+                .lastName("Mark")
+                .mail("john.mark@gmil.com")
+                .password("password")
+                .build());
+
+        List<EmailOutbox> queued = emailOutboxRepository.findAll();
+        assertEquals(1, queued.size());
+        assertEquals(EmailOutboxStatus.PENDING, queued.get(0).getStatus());
+        assertEquals(0, greenMail.getReceivedMessages().length);
+
+        assertEquals(1, emailOutboxDispatcher.dispatch());
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertEquals("Account Confirmation", received[0].getSubject());
+        assertEquals("john.mark@gmil.com", received[0].getAllRecipients()[0].toString());
+        assertEquals(EmailOutboxStatus.SENT, emailOutboxRepository.findAll().get(0).getStatus());
+        assertEquals(0, emailOutboxDispatcher.dispatch());
+    }
+
+    @Test
+    void testSendNewFilmsNotifications_ManyRecipients_OnlyOneInsertPerRecipient() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Map<Long, Film> filmsById = Map.of(1L, Film.builder()
+                .id(1L)
+                .title("Star Wars")
+                .director("George Lucas")
+                .category("Sci-Fi")
+                .build());
+
+        statistics.clear();
+        emailService.sendNewFilmsNotifications(notifications(1, 1), filmsById);
+        long singleStatements = statistics.getPrepareStatementCount();
+        long singleQueries = statistics.getQueryExecutionCount();
+        statistics.clear();
+        emailService.sendNewFilmsNotifications(notifications(101, 20), filmsById);
+
+        assertEquals(singleQueries, statistics.getQueryExecutionCount());
+        assertEquals(singleStatements + 19, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(21, emailOutboxRepository.count());
+    }
+
+    @Test
+    void testPurge_SentAndFailedPastRetention_DeletedAndQueuedKept() {
+        LocalDateTime old = LocalDateTime.now().minusDays(31);
+        emailOutboxRepository.saveAll(List.of(
+                email(EmailOutboxStatus.SENT, old),
+                email(EmailOutboxStatus.FAILED, old),
+                email(EmailOutboxStatus.PENDING, old),
+                email(EmailOutboxStatus.SENT, LocalDateTime.now())));
+
+        assertEquals(2, emailOutboxPurger.purge());
+
+        assertEquals(List.of(EmailOutboxStatus.PENDING, EmailOutboxStatus.SENT),
+                emailOutboxRepository.findAll().stream().map(EmailOutbox::getStatus).sorted().toList());
+    }
+
+    private static EmailOutbox email(EmailOutboxStatus status, LocalDateTime createdAt) {
+        return EmailOutbox.builder()
+                .recipient("john.mark@gmail.com")
+                .subject("Subject")
+                .body("Body")
+                .status(status)
+                .createdAt(createdAt)
+                .nextAttemptAt(createdAt)
+                .build();
+    }
+
+    private static List<FilmNotificationDto> notifications(long firstClientId, int count) {
+        return LongStream.range(firstClientId, firstClientId + count)
+                .mapToObj(clientId -> FilmNotificationDto.builder()
+                        .clientId(clientId)
+                        .mail("client" + clientId + "@example.com")
+                        .filmIds(List.of(1L))
+                        .build())
+                .toList();
+    }
+}
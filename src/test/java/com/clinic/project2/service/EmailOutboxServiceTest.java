@@ -0,0 +1,127 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.EmailOutbox;
+import com.clinic.project2.model.EmailOutboxStatus;
+import com.clinic.project2.repository.EmailOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxServiceTest {
+
+    @Mock
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @InjectMocks
+    private EmailOutboxService emailOutboxService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(emailOutboxService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(emailOutboxService, "initialBackoffMs", 1000L);
+        ReflectionTestUtils.setField(emailOutboxService, "maxBackoffMs", 5000L);
+        ReflectionTestUtils.setField(emailOutboxService, "leaseMs", 60000L);
+    }
+
+    @Test
+    void testEnqueue_NewEmail_SavedAsPendingAndDueNow() {
+        when(emailOutboxRepository.save(any(EmailOutbox.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        EmailOutbox email = emailOutboxService.enqueue("john.mark@gmail.com", "Subject", "Body", true);
+
+        assertEquals(EmailOutboxStatus.PENDING, email.getStatus());
+        assertEquals(0, email.getAttempts());
+        assertTrue(email.isHtml());
+        assertFalse(email.getNextAttemptAt().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void testClaimBatch_DueEmails_LeasedAndAttemptCounted() {
+        EmailOutbox email = EmailOutbox.builder().id(1L).status(EmailOutboxStatus.PENDING).nextAttemptAt(LocalDateTime.now()).build();
+        when(emailOutboxRepository.findDueForUpdate(any(LocalDateTime.class), eq(10))).thenReturn(List.of(email));
+
+        List<EmailOutbox> batch = emailOutboxService.claimBatch(10);
+
+        assertEquals(1, batch.size());
+        assertEquals(EmailOutboxStatus.SENDING, email.getStatus());
+        assertEquals(1, email.getAttempts());
+        assertTrue(email.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(50)));
+    }
+
+    @Test
+    void testMarkFailed_AttemptsLeft_RescheduledWithBackoff() {
+        EmailOutbox email = EmailOutbox.builder().id(1L).status(EmailOutboxStatus.SENDING).attempts(2).build();
+        when(emailOutboxRepository.findById(1L)).thenReturn(Optional.of(email));
+
+        emailOutboxService.markFailed(1L, new IllegalStateException("SMTP down"));
+
+        assertEquals(EmailOutboxStatus.PENDING, email.getStatus());
+        assertEquals("SMTP down", email.getLastError());
+        assertTrue(email.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(1)));
+    }
+
+    @Test
+    void testMarkFailed_NoAttemptsLeft_MarkedFailed() {
+        EmailOutbox email = EmailOutbox.builder().id(1L).status(EmailOutboxStatus.SENDING).attempts(3).build();
+        when(emailOutboxRepository.findById(1L)).thenReturn(Optional.of(email));
+
+        emailOutboxService.markFailed(1L, new IllegalStateException("SMTP down"));
+
+        assertEquals(EmailOutboxStatus.FAILED, email.getStatus());
+    }
+
+    @Test
+    void testMarkSent_DeliveredEmails_MarkedSentInOneUpdate() {
+        emailOutboxService.markSent(List.of(1L, 2L));
+
+        verify(emailOutboxRepository).markSent(eq(List.of(1L, 2L)), eq(EmailOutboxStatus.SENT), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testMarkSent_NothingDelivered_NoUpdate() {
+        emailOutboxService.markSent(List.of());
+
+        verifyNoInteractions(emailOutboxRepository);
+    }
+
+    @Test
+    void testPurgeFinished_OldSentAndFailedEmails_DeletedByIds() {
+        when(emailOutboxRepository.findIdsCreatedBefore(eq(List.of(EmailOutboxStatus.SENT, EmailOutboxStatus.FAILED)),
+                any(LocalDateTime.class), eq(Limit.of(100)))).thenReturn(List.of(1L, 2L));
+        when(emailOutboxRepository.deleteByIds(List.of(1L, 2L))).thenReturn(2);
+
+        assertEquals(2, emailOutboxService.purgeFinished(100));
+    }
+
+    @Test
+    void testPurgeFinished_NothingOld_NoDelete() {
+        when(emailOutboxRepository.findIdsCreatedBefore(any(), any(), any())).thenReturn(List.of());
+
+        assertEquals(0, emailOutboxService.purgeFinished(100));
+        verify(emailOutboxRepository, never()).deleteByIds(any());
+    }
+
+    @Test
+    void testBackoff_GrowsExponentiallyUpToLimit() {
+        assertEquals(1000L, emailOutboxService.backoffMs(1));
+        assertEquals(2000L, emailOutboxService.backoffMs(2));
+        assertEquals(4000L, emailOutboxService.backoffMs(3));
+        assertEquals(5000L, emailOutboxService.backoffMs(4));
+        assertEquals(5000L, emailOutboxService.backoffMs(50));
+    }
+}
@@ -0,0 +1,44 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.Film;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rendering the body of one new films notification.
+ */
+@State(Scope.Benchmark)
+public class EmailRenderingJmh {
+
+    @Param({"10", "1000", "10000"})
+    private int films;
+
+    private EmailService emailService;
+    private List<Film> newFilms;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        emailService = new EmailService(null, null, null, null);
+        newFilms = new ArrayList<>(films);
+        for (long filmId = 1; filmId <= films; filmId++) {
+            newFilms.add(Film.builder()
+                    .id(filmId)
+                    .title("Film " + filmId)
+                    .director("Director " + filmId % 100)
+                    .category("Category " + filmId % 20)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public String buildEmailContent() {
+        return emailService.buildEmailContentForNewBooks(newFilms);
+    }
+}
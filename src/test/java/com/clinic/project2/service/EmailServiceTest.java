@@ -2,16 +2,24 @@ package com.clinic.project2.service;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.clinic.project2.model.Client;
+import com.clinic.project2.model.EmailOutbox;
 import com.clinic.project2.model.Film;
-import com.clinic.project2.repository.ClientRepository;
-import com.clinic.project2.repository.FilmRepository;
+import com.clinic.project2.model.dto.FilmNotificationDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -19,11 +27,16 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 
-import java.util.HashSet;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,88 +49,262 @@ class EmailServiceTest {
     private JavaMailSender sender;
 
     @Mock
-    private ClientRepository clientRepository;
+    private PooledMailSender pooledMailSender;
 
     @Mock
-    private FilmRepository filmRepository;
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private NotificationLedger notificationLedger;
 
     @Captor
-    private ArgumentCaptor<SimpleMailMessage> mailMessageCaptor;
+    private ArgumentCaptor<String> bodyCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<MimeMessage>> messagesCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<FilmNotificationDto>> notificationsCaptor;
 
     @Test
-    public void testSendNewFilmsNotification_ValidEmailAndBook_EmailSent() {
+    public void testSendNewFilmsNotification_ValidEmailAndBook_EmailQueued() {
         String email = "john.mark@gmail.com";
-        Client client = Client.builder()
-                .id(1L)
-                .mail(email)
-                .subscriptionDirector(Set.of("Director"))
-                .subscriptionCategory(Set.of("Category"))
-                .build();
         Film film = Film.builder()
+                .id(1L)
                 .title("Title")
                 .director("Director")
                 .category("Category")
                 .build();
-        when(clientRepository.findByMail(email)).thenReturn(client);
+        FilmNotificationDto notification = FilmNotificationDto.builder()
+                .mail(email)
+                .filmIds(List.of(1L))
+                .build();
 
-        emailService.sendNewFilmsNotification(email, List.of(film));
+        assertTrue(emailService.sendNewFilmsNotification(notification, Map.of(1L, film)));
 
-        verify(sender).send(mailMessageCaptor.capture());
-        SimpleMailMessage sentMessage = mailMessageCaptor.getValue();
-        assertEquals(email, sentMessage.getTo()[0]);
-        assertTrue(sentMessage.getSubject().contains("\uD83C\uDFA5 New Films Available"));
-        assertTrue(sentMessage.getText().contains("Title: " + film.getTitle()));
-        assertTrue(sentMessage.getText().contains("Director: " + film.getDirector()));
-        assertTrue(sentMessage.getText().contains("Category: " + film.getCategory()));
+        verify(emailOutboxService).enqueue(eq(email), eq("\uD83C\uDFA5 New Films Available"), bodyCaptor.capture(), eq(false));
+        String body = bodyCaptor.getValue();
+        assertTrue(body.contains("Title: " + film.getTitle()));
+        assertTrue(body.contains("Director: " + film.getDirector()));
+        assertTrue(body.contains("Category: " + film.getCategory()));
+        verify(sender, never()).send(any(MimeMessage.class));
     }
 
     @Test
-    public void testSendNewBookNotification_ValidEmailAndBook_EmailSent() {
+    public void testSendNewBookNotification_OnlyMatchedFilmsIncluded_EmailQueued() {
         String email = "john.mark@gmail.com";
-        Client client = Client.builder()
+        Film matched = Film.builder()
                 .id(1L)
+                .title("Title")
+                .director("Director")
+                .category("Category")
+                .build();
+        Film other = Film.builder()
+                .id(2L)
+                .title("Other")
+                .director("Other Director")
+                .category("Other Category")
+                .build();
+        FilmNotificationDto notification = FilmNotificationDto.builder()
                 .mail(email)
-                .subscriptionDirector(Set.of("Director"))
-                .subscriptionCategory(Set.of("Category"))
+                .filmIds(List.of(1L))
                 .build();
 
+        emailService.sendNewFilmsNotification(notification, Map.of(1L, matched, 2L, other));
+
+        verify(emailOutboxService).enqueue(eq(email), anyString(), bodyCaptor.capture(), eq(false));
+        assertTrue(bodyCaptor.getValue().contains("Title: " + matched.getTitle()));
+        assertFalse(bodyCaptor.getValue().contains("Title: " + other.getTitle()));
+    }
+
+    @Test
+    public void testSendNewBookNotification_NoMatchedFilms_NothingQueued() {
         Film film = Film.builder()
+                .id(1L)
                 .title("Title")
                 .director("Director")
                 .category("Category")
                 .build();
+        FilmNotificationDto notification = FilmNotificationDto.builder()
+                .mail("")
+                .filmIds(List.of())
+                .build();
 
-        when(clientRepository.findByMail(email)).thenReturn(client);
-
-        emailService.sendNewFilmsNotification(email, List.of(film));
-        verify(sender).send(mailMessageCaptor.capture());
-        SimpleMailMessage sentMessage = mailMessageCaptor.getValue();
-        assertEquals(email, sentMessage.getTo()[0]);
-        assertTrue(sentMessage.getSubject().contains("\uD83C\uDFA5 New Films Available"));
-        assertTrue(sentMessage.getText().contains("Title: " + film.getTitle()));
-        assertTrue(sentMessage.getText().contains("Director: " + film.getDirector()));
-        assertTrue(sentMessage.getText().contains("Category: " + film.getCategory()));
+        assertDoesNotThrow(() -> assertFalse(emailService.sendNewFilmsNotification(notification, Map.of(1L, film))));
+        verify(emailOutboxService, never()).enqueue(anyString(), anyString(), anyString(), anyBoolean());
     }
 
     @Test
-    public void testSendNewBookNotification_EmptyEmail_NoExceptionThrown() {
-        String email = "";
-        Client client = Client.builder()
+    public void testSendNewFilmsNotification_ManyRecipients_OneMessageQueuedPerRecipient() {
+        Film film = Film.builder()
                 .id(1L)
-                .mail(email)
-                .subscriptionCategory(new HashSet<>())
-                .subscriptionDirector(new HashSet<>())
+                .title("Title")
+                .director("Director")
+                .category("Category")
                 .build();
+        List<String> recipients = List.of("a@gmail.com", "b@gmail.com", "c@gmail.com");
 
+        recipients.forEach(mail -> emailService.sendNewFilmsNotification(
+                FilmNotificationDto.builder().mail(mail).filmIds(List.of(1L)).build(), Map.of(1L, film)));
+
+        verify(emailOutboxService, times(recipients.size())).enqueue(anyString(), anyString(), anyString(), eq(false));
+    }
+
+    @Test
+    public void testSendNewFilmsNotifications_Batch_ReturnsOnlyAnnouncedFilms() {
         Film film = Film.builder()
+                .id(1L)
                 .title("Title")
                 .director("Director")
                 .category("Category")
                 .build();
+        List<FilmNotificationDto> notifications = List.of(
+                FilmNotificationDto.builder().mail("a@gmail.com").filmIds(List.of(1L)).build(),
+                FilmNotificationDto.builder().mail("b@gmail.com").filmIds(List.of(2L)).build());
+
+        Set<Long> notifiedFilmIds = emailService.sendNewFilmsNotifications(notifications, Map.of(1L, film));
+
+        assertEquals(Set.of(1L), notifiedFilmIds);
+        verify(emailOutboxService, times(1)).enqueue(eq("a@gmail.com"), anyString(), anyString(), eq(false));
+    }
+
+    @Test
+    public void testSendNewFilmsNotifications_PairsAlreadyDelivered_OnlyMissingFilmsQueuedAndRecorded() {
+        Film first = Film.builder().id(1L).title("Title").director("Director").category("Category").build();
+        Film second = Film.builder().id(2L).title("Other").director("Other Director").category("Other Category").build();
+        Map<Long, Film> filmsById = Map.of(1L, first, 2L, second);
+        List<FilmNotificationDto> notifications = List.of(
+                FilmNotificationDto.builder().clientId(7L).mail("a@gmail.com").filmIds(List.of(1L, 2L)).build(),
+                FilmNotificationDto.builder().clientId(8L).mail("b@gmail.com").filmIds(List.of(1L)).build(),
+                FilmNotificationDto.builder().clientId(9L).mail("c@gmail.com").filmIds(List.of(2L)).build());
+        when(notificationLedger.findDelivered(notifications, filmsById.keySet()))
+                .thenReturn(Map.of(7L, Set.of(1L), 8L, Set.of(1L)));
+
+        Set<Long> notifiedFilmIds = emailService.sendNewFilmsNotifications(notifications, filmsById);
+
+        assertEquals(Set.of(1L, 2L), notifiedFilmIds);
+        verify(emailOutboxService).enqueue(eq("a@gmail.com"), anyString(), bodyCaptor.capture(), eq(false));
+        assertFalse(bodyCaptor.getValue().contains("Title: Title"));
+        assertTrue(bodyCaptor.getValue().contains("Title: Other"));
+        verify(emailOutboxService, never()).enqueue(eq("b@gmail.com"), anyString(), anyString(), anyBoolean());
+        verify(emailOutboxService).enqueue(eq("c@gmail.com"), anyString(), anyString(), eq(false));
+        verify(notificationLedger).record(notificationsCaptor.capture(), eq(filmsById.keySet()));
+        List<FilmNotificationDto> recorded = notificationsCaptor.getValue();
+        assertEquals(List.of(7L, 9L), recorded.stream().map(FilmNotificationDto::getClientId).toList());
+        assertEquals(List.of(2L), recorded.get(0).getFilmIds());
+    }
+
+    @Test
+    public void testSendNewFilmsNotifications_SameFilmSet_BodyRenderedOnce() {
+        Film first = Film.builder().id(1L).title("Title").director("Director").category("Category").build();
+        Film second = Film.builder().id(2L).title("Other").director("Other Director").category("Other Category").build();
+        Map<Long, Film> filmsById = Map.of(1L, first, 2L, second);
+        Map<List<Long>, String> renderedBodies = new HashMap<>();
+
+        emailService.sendNewFilmsNotifications(List.of(
+                FilmNotificationDto.builder().mail("a@gmail.com").filmIds(List.of(1L, 2L)).build(),
+                FilmNotificationDto.builder().mail("b@gmail.com").filmIds(List.of(2L, 1L)).build()), filmsById, renderedBodies);
+        emailService.sendNewFilmsNotifications(List.of(
+                FilmNotificationDto.builder().mail("c@gmail.com").filmIds(List.of(1L, 2L)).build(),
+                FilmNotificationDto.builder().mail("d@gmail.com").filmIds(List.of(1L)).build()), filmsById, renderedBodies);
+
+        verify(emailOutboxService, times(4)).enqueue(anyString(), anyString(), bodyCaptor.capture(), eq(false));
+        List<String> bodies = bodyCaptor.getAllValues();
+        assertSame(bodies.get(0), bodies.get(1));
+        assertSame(bodies.get(0), bodies.get(2));
+        assertFalse(bodies.get(3).contains("Title: Other"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        emailService.bindTo(registry);
+        assertEquals(2, registry.get("notification.render.bodies").tag("result", "rendered").functionCounter().count());
+        assertEquals(2, registry.get("notification.render.bodies").tag("result", "reused").functionCounter().count());
+        assertEquals(0.5, registry.get("notification.render.dedup.ratio").gauge().value());
+        assertEquals((bodies.get(0) + bodies.get(3)).getBytes(StandardCharsets.UTF_8).length,
+                registry.get("notification.render.bytes").functionCounter().count());
+    }
+
+    @Test
+    public void testSendEmailValidationRequest_ValidClient_HtmlEmailQueued() {
+        Client client = Client.builder()
+                .mail("john.mark@gmail.com")
+                .build();
+
+        emailService.sendEmailValidationRequest(client, "token");
+
+        verify(emailOutboxService).enqueue(eq(client.getMail()), eq("Account Confirmation"), bodyCaptor.capture(), eq(true));
+        assertTrue(bodyCaptor.getValue().contains("/api/v1/clients/confirm?token=token"));
+        verify(sender, never()).send(any(MimeMessage.class));
+    }
+
+    @Test
+    public void testDeliver_QueuedEmails_SentInOneBatch() throws Exception {
+        when(sender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+        when(pooledMailSender.send(any())).thenReturn(Map.of());
+        EmailOutbox first = EmailOutbox.builder()
+                .id(1L)
+                .recipient("john.mark@gmail.com")
+                .subject("Subject")
+                .body("Body")
+                .build();
+        EmailOutbox second = EmailOutbox.builder()
+                .id(2L)
+                .recipient("anna.mark@gmail.com")
+                .subject("Subject")
+                .body("<p>Body</p>")
+                .html(true)
+                .build();
+
+        Map<Long, Exception> failures = emailService.deliver(List.of(first, second));
+
+        assertTrue(failures.isEmpty());
+        verify(pooledMailSender).send(messagesCaptor.capture());
+        List<MimeMessage> sentMessages = messagesCaptor.getValue();
+        assertEquals(2, sentMessages.size());
+        assertEquals("john.mark@gmail.com", sentMessages.get(0).getAllRecipients()[0].toString());
+        assertEquals("Subject", sentMessages.get(0).getSubject());
+        assertEquals("Body", sentMessages.get(0).getContent());
+        assertEquals("anna.mark@gmail.com", sentMessages.get(1).getAllRecipients()[0].toString());
+        verify(sender, never()).send(any(MimeMessage.class));
+    }
+
+    @Test
+    public void testDeliver_SameContent_EncodedOnceAndCopiedPerRecipient() throws Exception {
+        when(sender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+        when(pooledMailSender.send(any())).thenReturn(Map.of());
+        EmailOutbox first = EmailOutbox.builder().id(1L).recipient("john.mark@gmail.com").subject("Subject").body("Body").build();
+        EmailOutbox second = EmailOutbox.builder().id(2L).recipient("anna.mark@gmail.com").subject("Subject").body("Body").build();
+
+        emailService.deliver(List.of(first, second));
+
+        verify(sender, times(1)).createMimeMessage();
+        verify(pooledMailSender).send(messagesCaptor.capture());
+        List<MimeMessage> sentMessages = messagesCaptor.getValue();
+        assertEquals("john.mark@gmail.com", sentMessages.get(0).getAllRecipients()[0].toString());
+        assertEquals("anna.mark@gmail.com", sentMessages.get(1).getAllRecipients()[0].toString());
+        assertEquals(1, sentMessages.get(1).getAllRecipients().length);
+        assertEquals("Body", sentMessages.get(1).getContent());
+        assertNull(sentMessages.get(1).getMessageID());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        emailService.bindTo(registry);
+        assertEquals(1, registry.get("email.delivery.encoded.reused").functionCounter().count());
+    }
+
+    @Test
+    public void testDeliver_SmtpFailure_FailureReportedByOutboxId() {
+        when(sender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+        MailSendException failure = new MailSendException("SMTP down");
+        when(pooledMailSender.send(any())).thenAnswer(invocation -> {
+            List<MimeMessage> messages = invocation.getArgument(0);
+            return Map.of(messages.get(1), failure);
+        });
+        EmailOutbox ok = EmailOutbox.builder().id(1L).recipient("john.mark@gmail.com").subject("Subject").body("Body").build();
+        EmailOutbox failing = EmailOutbox.builder().id(2L).recipient("anna.mark@gmail.com").subject("Subject").body("Body").build();
 
-        when(clientRepository.findByMail(email)).thenReturn(client);
+        Map<Long, Exception> failures = emailService.deliver(List.of(ok, failing));
 
-        assertDoesNotThrow(() -> emailService.sendNewFilmsNotification(email, List.of(film)));
-        verify(sender, never()).send(any(SimpleMailMessage.class));
+        assertEquals(Map.of(2L, failure), failures);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        emailService.bindTo(registry);
+        assertEquals(1, registry.get("email.delivery.messages").tag("result", "sent").functionCounter().count());
+        assertEquals(1, registry.get("email.delivery.messages").tag("result", "failed").functionCounter().count());
     }
 }
@@ -0,0 +1,106 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.dto.FilmPageDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmCatalogCacheTest {
+
+    private final FilmCatalogCache filmCatalogCache = new FilmCatalogCache();
+
+    @Test
+    void testGetPage_SameQueryTwice_LoadedOnceAndHitRecorded() {
+        AtomicInteger loads = new AtomicInteger();
+
+        FilmPageDto first = filmCatalogCache.getPage(0L, 10, null, "Fantasy", version -> page(loads));
+        FilmPageDto second = filmCatalogCache.getPage(0L, 10, null, "Fantasy", version -> page(loads));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, filmCatalogCache.getHits());
+        assertEquals(1, filmCatalogCache.getMisses());
+    }
+
+    @Test
+    void testInvalidate_VersionIncreasedAndPagesReloaded() {
+        AtomicInteger loads = new AtomicInteger();
+        filmCatalogCache.getPage(0L, 10, null, null, version -> page(loads));
+
+        long newVersion = filmCatalogCache.invalidate();
+        FilmPageDto reloaded = filmCatalogCache.getPage(0L, 10, null, null, version -> {
+            assertEquals(newVersion, version);
+            return page(loads);
+        });
+
+        assertEquals(1, newVersion);
+        assertEquals(2, loads.get());
+        assertNotNull(reloaded);
+    }
+
+    @Test
+    void testGetPage_WriteDuringLoad_StalePageNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        filmCatalogCache.getPage(0L, 10, null, null, version -> {
+            filmCatalogCache.invalidate();
+            return page(loads);
+        });
+
+        assertEquals(0, filmCatalogCache.size());
+    }
+
+    @Test
+    void testGetPage_PageOlderThanTtl_Reloaded() {
+        ReflectionTestUtils.setField(filmCatalogCache, "ttlMs", 0L);
+        AtomicInteger loads = new AtomicInteger();
+
+        filmCatalogCache.getPage(0L, 10, null, null, version -> page(loads));
+        filmCatalogCache.getPage(0L, 10, null, null, version -> page(loads));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, filmCatalogCache.getHits());
+        assertEquals(2, filmCatalogCache.getMisses());
+    }
+
+    @Test
+    void testGetPage_MoreQueriesThanMaxEntries_LeastRecentlyUsedEvicted() {
+        ReflectionTestUtils.setField(filmCatalogCache, "maxEntries", 2);
+        AtomicInteger loads = new AtomicInteger();
+
+        filmCatalogCache.getPage(0L, 10, "A", null, version -> page(loads));
+        filmCatalogCache.getPage(0L, 10, "B", null, version -> page(loads));
+        filmCatalogCache.getPage(0L, 10, "A", null, version -> page(loads));
+        filmCatalogCache.getPage(0L, 10, "C", null, version -> page(loads));
+        filmCatalogCache.getPage(0L, 10, "A", null, version -> page(loads));
+
+        assertEquals(2, filmCatalogCache.size());
+        assertEquals(1, filmCatalogCache.getEvictions());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testBindTo_MetersReflectCacheStatistics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        filmCatalogCache.bindTo(registry);
+        AtomicInteger loads = new AtomicInteger();
+
+        filmCatalogCache.getPage(0L, 10, null, null, version -> page(loads));
+        filmCatalogCache.getPage(0L, 10, null, null, version -> page(loads));
+        filmCatalogCache.invalidate();
+
+        assertEquals(1.0, registry.get("film.catalog.cache.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("film.catalog.cache.requests").tag("result", "miss").functionCounter().count());
+        assertEquals(1.0, registry.get("film.catalog.version").gauge().value());
+    }
+
+    private static FilmPageDto page(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return FilmPageDto.builder().films(List.of()).build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.exception.InvalidImportException;
+import com.clinic.project2.model.command.CreateFilmCommand;
+import com.clinic.project2.model.dto.FilmImportReportDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class FilmImportServiceTest {
+
+    private final FilmService filmService = mock(FilmService.class);
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private FilmImportService filmImportService;
+
+    @BeforeEach
+    void setUp() {
+        filmImportService = new FilmImportService(filmService, new ObjectMapper().findAndRegisterModules(),
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(filmImportService, "batchSize", 2);
+        doAnswer(invocation -> {
+            List<CreateFilmCommand> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            return null;
+        }).when(filmService).saveBatch(anyList());
+    }
+
+    @Test
+    void testImportCsv_ValidRows_InsertedInConfiguredBatches() throws Exception {
+        String csv = """
+                director,title,category
+                George Lucas,Star Wars,Sci-Fi
+                Peter Jackson,Hobbit,Fantasy
+                Ron Howard,Willow,Fantasy
+                """;
+
+        FilmImportReportDto report = filmImportService.importCsv(new StringReader(csv));
+
+        assertEquals(3, report.getImported());
+        assertEquals(0, report.getRejected());
+        assertEquals(List.of(2, 1), batchSizes);
+    }
+
+    @Test
+    void testImportCsv_InvalidRows_ReportedWithRowNumbers() throws Exception {
+        String csv = """
+                director,title,category
+                George Lucas,,Sci-Fi
+                "Jackson, Peter","Hobbit",Fantasy
+                "Unterminated,Willow,Fantasy
+                """;
+
+        FilmImportReportDto report = filmImportService.importCsv(new StringReader(csv));
+
+        assertEquals(1, report.getImported());
+        assertEquals(2, report.getRejected());
+        assertEquals(2, report.getErrors().get(0).getRow());
+        assertEquals("Title cannot be blank", report.getErrors().get(0).getMessage());
+        assertEquals(4, report.getErrors().get(1).getRow());
+        verify(filmService).saveBatch(List.of(CreateFilmCommand.builder()
+                .director("Jackson, Peter").title("Hobbit").category("Fantasy").build()));
+    }
+
+    @Test
+    void testImportNdjson_ErrorsOverLimit_CountedButNotReported() throws Exception {
+        ReflectionTestUtils.setField(filmImportService, "maxReportedErrors", 1);
+        String ndjson = """
+                {"director":"George Lucas","title":"Star Wars"}
+                not json
+                {"director":"Ron Howard","title":"Willow","category":"Fantasy"}
+                """;
+
+        FilmImportReportDto report = filmImportService.importNdjson(new StringReader(ndjson));
+
+        assertEquals(1, report.getImported());
+        assertEquals(2, report.getRejected());
+        assertEquals(1, report.getErrors().size());
+        assertEquals("Category cannot be blank", report.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    void testImportCsv_MissingHeader_Rejected() {
+        assertThrows(InvalidImportException.class, () -> filmImportService.importCsv(new StringReader("")));
+        verifyNoInteractions(filmService);
+    }
+}
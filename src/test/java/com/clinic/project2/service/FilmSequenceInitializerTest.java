@@ -0,0 +1,54 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.Film;
+import com.clinic.project2.repository.FilmRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.sequence.SequenceSupport;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class FilmSequenceInitializerTest {
+
+    @Autowired
+    private FilmSequenceInitializer filmSequenceInitializer;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void clearDatabase() {
+        filmRepository.deleteAll();
+    }
+
+    @Test
+    void testSeed_FilmsAboveSequence_SequenceMovedPastMaxId() {
+        long existingId = nextSequenceValue() + 10_000;
+        jdbcTemplate.update("INSERT INTO film (id, title, director, category) VALUES (?, ?, ?, ?)",
+                existingId, "Star Wars", "George Lucas", "Sci-Fi");
+
+        filmSequenceInitializer.seed();
+
+        assertTrue(nextSequenceValue() > existingId + Film.ID_ALLOCATION_SIZE);
+    }
+
+    private long nextSequenceValue() {
+        SequenceSupport sequences = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport();
+        String query = sequences.supportsSequences() ? sequences.getSequenceNextValString(Film.ID_SEQUENCE)
+                : "SELECT next_val FROM " + Film.ID_SEQUENCE;
+        return jdbcTemplate.queryForObject(query, Long.class);
+    }
+}
@@ -3,14 +3,26 @@ package com.clinic.project2.service;
 import com.clinic.project2.model.Film;
 import com.clinic.project2.model.command.CreateFilmCommand;
 import com.clinic.project2.model.dto.FilmDto;
+import com.clinic.project2.model.dto.FilmPageDto;
+import com.clinic.project2.model.event.FilmCreatedEvent;
+import com.clinic.project2.model.event.FilmsImportedEvent;
 import com.clinic.project2.repository.FilmRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -21,6 +33,12 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 class FilmServiceTest {
     @Mock
     private FilmRepository filmRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Spy
+    private FilmCatalogCache filmCatalogCache = new FilmCatalogCache();
     @InjectMocks
     private FilmService filmService;
     @Captor
@@ -44,10 +62,114 @@ class FilmServiceTest {
         assertEquals(command.getDirector(), result.getDirector());
         assertEquals(command.getCategory(), result.getCategory());
         verify(filmRepository, times(1)).save(filmArgumentCaptor.capture());
+        verify(filmCatalogCache).invalidate();
         Film savedFilm = filmArgumentCaptor.getValue();
         assertEquals(command.getTitle(), savedFilm.getTitle());
         assertEquals(command.getDirector(), savedFilm.getDirector());
         assertEquals(command.getCategory(), savedFilm.getCategory());
+        verify(eventPublisher).publishEvent(new FilmCreatedEvent(1L));
         verifyNoMoreInteractions(filmRepository);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFindPage_FullPage_NextCursorIsLastId() {
+        List<FilmDto> films = List.of(
+                FilmDto.builder().id(3L).title("Hobbit").build(),
+                FilmDto.builder().id(7L).title("Alien").build());
+        when(filmRepository.findPage(0L, null, "Fantasy", Limit.of(2))).thenReturn(films);
+
+        FilmPageDto page = filmService.findPage(0L, 2, null, "Fantasy");
+
+        assertEquals(films, page.getFilms());
+        assertEquals(7L, page.getNextCursor());
+    }
+
+    @Test
+    void testFindPage_RepeatedUntilSave_ServedFromCache() {
+        when(filmRepository.findPage(0L, null, null, Limit.of(2))).thenReturn(List.of(FilmDto.builder().id(3L).build()));
+
+        FilmPageDto first = filmService.findPage(0L, 2, null, null);
+        FilmPageDto second = filmService.findPage(0L, 2, null, null);
+        when(filmRepository.save(any(Film.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        filmService.save(CreateFilmCommand.builder().title("Alien").director("Ridley Scott").category("Sci-Fi").build());
+        FilmPageDto afterSave = filmService.findPage(0L, 2, null, null);
+
+        assertSame(first, second);
+        assertEquals(0L, first.getCatalogVersion());
+        assertEquals(1L, afterSave.getCatalogVersion());
+        verify(filmRepository, times(2)).findPage(0L, null, null, Limit.of(2));
+    }
+
+    @Test
+    void testFindPage_LastPage_NoNextCursor() {
+        when(filmRepository.findPage(7L, null, null, Limit.of(2))).thenReturn(List.of(FilmDto.builder().id(9L).build()));
+
+        FilmPageDto page = filmService.findPage(7L, 2, null, null);
+
+        assertEquals(1, page.getFilms().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testFindPage_LimitOutOfRange_ClampedToMaxPageSize() {
+        when(filmRepository.findPage(0L, null, null, Limit.of(FilmService.MAX_PAGE_SIZE))).thenReturn(List.of());
+
+        filmService.findPage(null, 100_000, null, null);
+
+        verify(filmRepository).findPage(0L, null, null, Limit.of(FilmService.MAX_PAGE_SIZE));
+    }
+
+    @Test
+    void testSaveBatch_InTransaction_CatalogInvalidatedOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            filmService.saveBatch(List.of(CreateFilmCommand.builder().title("Alien").build()));
+
+            verify(filmCatalogCache, never()).invalidate();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(filmCatalogCache).invalidate();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testSaveBatch_ValidCommands_CreatedDateSetAndOneEventPublished() {
+        when(filmRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Film> films = invocation.getArgument(0);
+            for (int i = 0; i < films.size(); i++) {
+                films.get(i).setId(i + 1L);
+            }
+            return films;
+        });
+
+        filmService.saveBatch(List.of(CreateFilmCommand.builder().title("Alien").build(),
+                CreateFilmCommand.builder().title("Aliens").build()));
+
+        verify(filmRepository).saveAll(argThat(films -> {
+            for (Film film : films) {
+                if (!LocalDate.now().equals(film.getCreatedDate())) {
+                    return false;
+                }
+            }
+            return true;
+        }));
+        verify(eventPublisher).publishEvent(new FilmsImportedEvent(List.of(1L, 2L)));
+        verifyNoMoreInteractions(eventPublisher);
+    }
+
+    @Test
+    void testSave_InTransaction_CatalogInvalidatedOnlyAfterCommit() {
+        when(filmRepository.save(any(Film.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            filmService.save(CreateFilmCommand.builder().title("Alien").build());
+
+            verify(filmCatalogCache, never()).invalidate();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(filmCatalogCache).invalidate();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
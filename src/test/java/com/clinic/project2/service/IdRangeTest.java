@@ -0,0 +1,36 @@
+package com.clinic.project2.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IdRangeTest {
+
+    @Test
+    void testSplit_IdSpace_SplitIntoContiguousRanges() {
+        assertEquals(List.of(
+                new IdRange(0, 3),
+                new IdRange(3, 6),
+                new IdRange(6, 9),
+                new IdRange(9, 10)), new IdRange(0, 10).split(4));
+        assertEquals(List.of(
+                new IdRange(0, 1),
+                new IdRange(1, 2)), new IdRange(0, 2).split(4));
+    }
+
+    @Test
+    void testSplit_EmptyRange_ReturnedAsIs() {
+        assertEquals(List.of(new IdRange(5, 5)), new IdRange(5, 5).split(4));
+    }
+
+    @Test
+    void testJoin_Ranges_ParsedBackUnchanged() {
+        List<IdRange> ranges = List.of(new IdRange(0, 3), new IdRange(7, 10));
+
+        assertEquals("0:3,7:10", IdRange.join(ranges));
+        assertEquals(ranges, IdRange.parseAll(IdRange.join(ranges)));
+        assertEquals(List.of(), IdRange.parseAll(""));
+    }
+}
@@ -0,0 +1,235 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.JobShard;
+import com.clinic.project2.model.JobShardStatus;
+import com.clinic.project2.model.dto.JobProgressDto;
+import com.clinic.project2.repository.JobShardRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobShardServiceTest {
+
+    private static final String JOB = "job";
+    private static final LocalDate RUN_DATE = LocalDate.of(2026, 10, 18);
+
+    @Mock
+    private JobShardRepository jobShardRepository;
+
+    @InjectMocks
+    private JobShardService jobShardService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCreateShards_NewRun_ShardsCoverIdRange() {
+        when(jobShardRepository.existsByJobNameAndRunDate(JOB, RUN_DATE)).thenReturn(false);
+
+        jobShardService.createShards(JOB, RUN_DATE, new IdRange(0, 9), 3, List.of(42L, 43L));
+
+        ArgumentCaptor<List<JobShard>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jobShardRepository).saveAll(captor.capture());
+        List<JobShard> shards = captor.getValue();
+        assertEquals(List.of(0L, 3L, 6L), shards.stream().map(JobShard::getRangeAfter).toList());
+        assertEquals(List.of(3L, 6L, 9L), shards.stream().map(JobShard::getRangeUpTo).toList());
+        assertTrue(shards.stream().allMatch(shard -> shard.getStatus() == JobShardStatus.PENDING
+                && "42,43".equals(shard.getRunFilmIds())));
+    }
+
+    @Test
+    void testCreateShards_RunAlreadyCreated_NothingSaved() {
+        when(jobShardRepository.existsByJobNameAndRunDate(JOB, RUN_DATE)).thenReturn(true);
+
+        jobShardService.createShards(JOB, RUN_DATE, new IdRange(0, 9), 3, List.of(42L));
+
+        verify(jobShardRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testClaim_PendingShard_LeasedToThisNode() {
+        JobShard shard = shard(1L, JobShardStatus.PENDING, null);
+        when(jobShardRepository.findClaimableForUpdate(eq(JOB), eq(RUN_DATE), any())).thenReturn(Optional.of(shard));
+
+        JobShard claimed = jobShardService.claim(JOB, RUN_DATE);
+
+        assertSame(shard, claimed);
+        assertEquals(JobShardStatus.RUNNING, claimed.getStatus());
+        assertEquals(jobShardService.getNodeId(), claimed.getOwner());
+        assertTrue(claimed.getLeaseUntil().isAfter(LocalDateTime.now()));
+        assertTrue(jobShardService.holds(1L));
+    }
+
+    @Test
+    void testClaim_NothingClaimable_ReturnsNull() {
+        when(jobShardRepository.findClaimableForUpdate(eq(JOB), eq(RUN_DATE), any())).thenReturn(Optional.empty());
+
+        assertNull(jobShardService.claim(JOB, RUN_DATE));
+    }
+
+    @Test
+    void testRenewLeases_LeaseTakenOver_ShardNoLongerHeld() {
+        when(jobShardRepository.findClaimableForUpdate(eq(JOB), eq(RUN_DATE), any()))
+                .thenReturn(Optional.of(shard(1L, JobShardStatus.PENDING, null)));
+        jobShardService.claim(JOB, RUN_DATE);
+        when(jobShardRepository.renew(eq(1L), eq(jobShardService.getNodeId()), eq(JobShardStatus.RUNNING), any()))
+                .thenReturn(0);
+
+        jobShardService.renewLeases();
+
+        assertFalse(jobShardService.holds(1L));
+    }
+
+    @Test
+    void testRelease_ClaimedShard_PendingAgainAndNoLongerRenewed() {
+        JobShard shard = shard(1L, JobShardStatus.PENDING, null);
+        when(jobShardRepository.findClaimableForUpdate(eq(JOB), eq(RUN_DATE), any())).thenReturn(Optional.of(shard));
+        jobShardService.claim(JOB, RUN_DATE);
+        when(jobShardRepository.release(1L, jobShardService.getNodeId(), JobShardStatus.RUNNING,
+                JobShardStatus.PENDING)).thenReturn(1);
+
+        jobShardService.release(shard);
+        jobShardService.renewLeases();
+
+        assertFalse(jobShardService.holds(1L));
+        verify(jobShardRepository, never()).renew(any(), any(), any(), any());
+    }
+
+    @Test
+    void testComplete_LastShardOfRun_CallbackGetsFilmsOfAllShards() {
+        JobShard done = shard(1L, JobShardStatus.DONE, "other-node");
+        done.setNotifiedFilmIds("10,11");
+        JobShard running = shard(2L, JobShardStatus.RUNNING, jobShardService.getNodeId());
+        when(jobShardRepository.lockRun(JOB, RUN_DATE)).thenReturn(List.of(done, running));
+        List<Set<Long>> completed = new ArrayList<>();
+
+        assertTrue(jobShardService.complete(running, List.of(11L, 12L), completed::add));
+
+        assertEquals(JobShardStatus.DONE, running.getStatus());
+        assertEquals(List.of(Set.of(10L, 11L, 12L)), completed);
+    }
+
+    @Test
+    void testComplete_OtherShardsPending_CallbackNotCalled() {
+        JobShard pending = shard(1L, JobShardStatus.PENDING, null);
+        JobShard running = shard(2L, JobShardStatus.RUNNING, jobShardService.getNodeId());
+        when(jobShardRepository.lockRun(JOB, RUN_DATE)).thenReturn(List.of(pending, running));
+        List<Set<Long>> completed = new ArrayList<>();
+
+        assertTrue(jobShardService.complete(running, List.of(10L), completed::add));
+
+        assertEquals("10", running.getNotifiedFilmIds());
+        assertTrue(completed.isEmpty());
+    }
+
+    @Test
+    void testComplete_ShardTakenOver_NotMarkedDone() {
+        JobShard running = shard(1L, JobShardStatus.RUNNING, "other-node");
+        when(jobShardRepository.lockRun(JOB, RUN_DATE)).thenReturn(List.of(running));
+        List<Set<Long>> completed = new ArrayList<>();
+
+        assertFalse(jobShardService.complete(running, List.of(10L), completed::add));
+
+        assertEquals(JobShardStatus.RUNNING, running.getStatus());
+        assertTrue(completed.isEmpty());
+    }
+
+    @Test
+    void testCheckpoint_LeaseHeld_PendingRangesAndCountersSaved() {
+        JobShard shard = shard(1L, JobShardStatus.RUNNING, jobShardService.getNodeId());
+        when(jobShardRepository.checkpoint(eq(1L), eq(jobShardService.getNodeId()), eq(JobShardStatus.RUNNING),
+                eq("4:6,8:9"), eq("10,11"), eq(7L), eq(2L), any())).thenReturn(1);
+
+        assertTrue(jobShardService.checkpoint(shard, List.of(new IdRange(4, 6), new IdRange(8, 9)),
+                List.of(10L, 11L), 7L, 2L));
+
+        assertEquals("4:6,8:9", shard.getPendingRanges());
+        assertEquals(7L, shard.getScannedClients());
+        assertNotNull(shard.getCheckpointAt());
+    }
+
+    @Test
+    void testCheckpoint_ShardTakenOver_ShardNoLongerHeld() {
+        when(jobShardRepository.findClaimableForUpdate(eq(JOB), eq(RUN_DATE), any()))
+                .thenReturn(Optional.of(shard(1L, JobShardStatus.PENDING, null)));
+        JobShard shard = jobShardService.claim(JOB, RUN_DATE);
+        when(jobShardRepository.checkpoint(any(), any(), any(), any(), any(), anyLong(), anyLong(), any()))
+                .thenReturn(0);
+
+        assertFalse(jobShardService.checkpoint(shard, List.of(), List.of(), 0L, 0L));
+
+        assertFalse(jobShardService.holds(1L));
+        assertNull(shard.getCheckpointAt());
+    }
+
+    @Test
+    void testProgress_RunHalfScanned_RemainingTimeExtrapolated() {
+        LocalDateTime startedAt = LocalDateTime.now().minusMinutes(10);
+        JobShard done = shard(1L, JobShardStatus.DONE, "other-node");
+        done.setRangeUpTo(100L);
+        done.setScannedClients(80L);
+        done.setNotifiedClients(20L);
+        done.setStartedAt(startedAt);
+        JobShard running = shard(2L, JobShardStatus.RUNNING, jobShardService.getNodeId());
+        running.setRangeAfter(100L);
+        running.setRangeUpTo(200L);
+        running.setPendingRanges("150:200");
+        running.setScannedClients(40L);
+        running.setNotifiedClients(5L);
+        running.setStartedAt(startedAt.plusMinutes(1));
+        running.setCheckpointAt(startedAt.plusMinutes(9));
+        JobShard pending = shard(3L, JobShardStatus.PENDING, null);
+        pending.setRangeAfter(200L);
+        pending.setRangeUpTo(300L);
+        when(jobShardRepository.findByJobNameAndRunDateOrderByShardIndex(JOB, RUN_DATE))
+                .thenReturn(List.of(done, running, pending));
+
+        JobProgressDto progress = jobShardService.progress(JOB, RUN_DATE);
+
+        assertEquals("RUNNING", progress.getStatus());
+        assertEquals(3, progress.getShards());
+        assertEquals(1, progress.getDoneShards());
+        assertEquals(1, progress.getRunningShards());
+        assertEquals(120L, progress.getScannedClients());
+        assertEquals(25L, progress.getNotifiedClients());
+        assertEquals(0.5, progress.getProgress(), 1e-9);
+        assertEquals(startedAt, progress.getStartedAt());
+        assertEquals(startedAt.plusMinutes(9), progress.getLastCheckpointAt());
+        assertTrue(Math.abs(progress.getRemainingSeconds() - 600) <= 1);
+        assertNotNull(progress.getEstimatedCompletion());
+    }
+
+    @Test
+    void testProgress_NoShards_NotStarted() {
+        when(jobShardRepository.findByJobNameAndRunDateOrderByShardIndex(JOB, RUN_DATE)).thenReturn(List.of());
+
+        JobProgressDto progress = jobShardService.progress(JOB, RUN_DATE);
+
+        assertEquals("NOT_STARTED", progress.getStatus());
+        assertEquals(0, progress.getShards());
+        assertNull(progress.getRemainingSeconds());
+    }
+
+    private static JobShard shard(Long id, JobShardStatus status, String owner) {
+        return JobShard.builder()
+                .id(id)
+                .jobName(JOB)
+                .runDate(RUN_DATE)
+                .status(status)
+                .owner(owner)
+                .build();
+    }
+}
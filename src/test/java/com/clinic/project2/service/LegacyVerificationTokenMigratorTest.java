@@ -0,0 +1,81 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.Client;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.VerificationTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LegacyVerificationTokenMigratorTest {
+
+    @Autowired
+    private LegacyVerificationTokenMigrator legacyVerificationTokenMigrator;
+
+    @Autowired
+    private VerificationTokenService verificationTokenService;
+
+    @Autowired
+    private VerificationTokenRepository verificationTokenRepository;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clearDatabase() {
+        verificationTokenRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void testMigrate_LegacyTokens_HashedIntoTokenTableAndColumnEmptied() {
+        Long pending = clientRepository.save(client("pending@example.com", false)).getId();
+        Long confirmed = clientRepository.save(client("confirmed@example.com", true)).getId();
+        jdbcTemplate.execute("ALTER TABLE client ADD COLUMN verification_token VARCHAR(255)");
+        jdbcTemplate.update("UPDATE client SET verification_token = ? WHERE id = ?", "legacy-pending", pending);
+        jdbcTemplate.update("UPDATE client SET verification_token = ? WHERE id = ?", "legacy-confirmed", confirmed);
+        try {
+            legacyVerificationTokenMigrator.migrate();
+            legacyVerificationTokenMigrator.migrate();
+
+            assertEquals(1, verificationTokenRepository.count());
+            assertTrue(verificationTokenRepository.findAll().get(0).getExpiresAt().isAfter(LocalDateTime.now()));
+            assertEquals(0, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM client WHERE verification_token IS NOT NULL", Integer.class));
+            assertEquals(Optional.of(pending), verificationTokenService.consume("legacy-pending"));
+            assertEquals(Optional.empty(), verificationTokenService.consume("legacy-confirmed"));
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE client DROP COLUMN verification_token");
+        }
+    }
+
+    @Test
+    void testMigrate_NoLegacyColumn_NothingMigrated() {
+        clientRepository.save(client("pending@example.com", false));
+
+        assertDoesNotThrow(() -> legacyVerificationTokenMigrator.migrate());
+
+        assertEquals(0, verificationTokenRepository.count());
+    }
+
+    private static Client client(String mail, boolean active) {
+        return Client.builder()
+                .firstName("John")
+                .lastName("Mark")
+                .mail(mail)
+                .password("password")
+                .active(active)
+                .build();
+    }
+}
@@ -0,0 +1,128 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.SyntheticDataGenerator;
+import com.clinic.project2.repository.EmailOutboxRepository;
+import com.clinic.project2.repository.FilmRepository;
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reproduces the nightly notification run on generated data: {@code load.clients} clients with skewed
+ * subscriptions and {@code load.films} new films. The real sendNotifications queues the emails and the outbox
+ * delivers them to a local GreenMail server. Run with {@code mvn test -Pload-test}.
+ */
+@SpringBootTest(properties = {
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.username=outbox",
+        "spring.mail.password=outbox",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "email.outbox.poll-interval-ms=3600000",
+        "email.rate-limit.messages-per-second=0"
+})
+class NotificationLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 10_000);
+    private static final int FILMS = Integer.getInteger("load.films", 200);
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withUser("outbox", "outbox"));
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void loadNightlyNotificationRun() {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(jdbcTemplate, filmRepository, 42);
+        generator.clear();
+        long start = System.nanoTime();
+        generator.generateClients(CLIENTS);
+        generator.generateFilms(FILMS);
+        double generateSeconds = seconds(start);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        resetPeakHeap();
+        start = System.nanoTime();
+        notificationService.sendNotifications();
+        double queueSeconds = seconds(start);
+        long queueStatements = statistics.getPrepareStatementCount();
+        long queued = emailOutboxRepository.count();
+
+        int delivered = 0;
+        int sent;
+        while ((sent = emailOutboxDispatcher.dispatch()) > 0) {
+            delivered += sent;
+        }
+        double totalSeconds = seconds(start);
+
+        assertTrue(queued > 0);
+        assertEquals(queued, delivered);
+        assertEquals(delivered, greenMail.getReceivedMessages().length);
+        System.out.printf("Generated %,d clients and %,d films in %.1f s%n", CLIENTS, FILMS, generateSeconds);
+        System.out.printf("Queued %,d emails in %.1f s with %,d statements%n", queued, queueSeconds, queueStatements);
+        System.out.printf("Delivered %,d emails, %.1f s wall time, %.0f emails/s%n",
+                delivered, totalSeconds, delivered / totalSeconds);
+        System.out.printf("DB statements: %,d (%,d queries, %,d entities loaded)%n",
+                statistics.getPrepareStatementCount(), statistics.getQueryExecutionCount(),
+                statistics.getEntityLoadCount());
+        System.out.printf("Peak heap: %,d MB%n", peakHeap() / (1024 * 1024));
+    }
+
+    private static double seconds(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000_000.0;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,104 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.DictionaryTerm;
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.TermKind;
+import com.clinic.project2.model.dto.ClientContactDto;
+import com.clinic.project2.model.dto.FilmNotificationDto;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.DictionaryTermRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The client x film matching of the nightly run: matching a day of films against the subscription index, and
+ * turning the scanned clients into notifications. Every client subscribes to {@code subscriptions} of
+ * {@value #DIRECTORS} directors and one in ten also to one of {@value #CATEGORIES} categories.
+ */
+@State(Scope.Benchmark)
+public class NotificationMatchingJmh {
+
+    private static final int DIRECTORS = 10_000;
+    private static final int CATEGORIES = 500;
+
+    @Param({"1000", "100000", "1000000"})
+    private int clients;
+
+    @Param({"10", "1000", "10000"})
+    private int films;
+
+    @Param({"1", "5", "20"})
+    private int subscriptions;
+
+    private SubscriptionIndex subscriptionIndex;
+    private List<Film> newFilms;
+    private List<ClientContactDto> scannedClients;
+    private Map<Long, List<Film>> clientToFilmMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        subscriptionIndex = new SubscriptionIndex(mock(ClientRepository.class), new TermDictionary(dictionaryRepository()));
+        scannedClients = new ArrayList<>(clients);
+        for (long clientId = 1; clientId <= clients; clientId++) {
+            Set<String> directors = new HashSet<>();
+            while (directors.size() < subscriptions) {
+                directors.add("Director " + random.nextInt(DIRECTORS));
+            }
+            Set<String> categories = random.nextInt(10) == 0 ? Set.of("Category " + random.nextInt(CATEGORIES)) : Set.of();
+            subscriptionIndex.subscribe(clientId, directors, categories);
+            scannedClients.add(new ClientContactDto(clientId, "client" + clientId + "@example.com"));
+        }
+        newFilms = new ArrayList<>(films);
+        for (long filmId = 1; filmId <= films; filmId++) {
+            newFilms.add(Film.builder()
+                    .id(filmId)
+                    .title("Film " + filmId)
+                    .director("Director " + random.nextInt(DIRECTORS))
+                    .category("Category " + random.nextInt(CATEGORIES))
+                    .build());
+        }
+        clientToFilmMap = subscriptionIndex.match(newFilms);
+    }
+
+    @Benchmark
+    public Map<Long, List<Film>> matchFilms() {
+        return subscriptionIndex.match(newFilms);
+    }
+
+    @Benchmark
+    public List<FilmNotificationDto> buildNotifications() {
+        return NotificationService.toNotifications(scannedClients, clientToFilmMap);
+    }
+
+    private static DictionaryTermRepository dictionaryRepository() {
+        DictionaryTermRepository repository = mock(DictionaryTermRepository.class);
+        AtomicInteger nextTermId = new AtomicInteger();
+        Map<String, DictionaryTerm> terms = new HashMap<>();
+        when(repository.findByKindAndName(any(), any())).thenAnswer(invocation -> {
+            TermKind kind = invocation.getArgument(0);
+            String name = invocation.getArgument(1);
+            return Optional.of(terms.computeIfAbsent(kind + ":" + name, key -> DictionaryTerm.builder()
+                    .id(nextTermId.incrementAndGet()).kind(kind).name(name).build()));
+        });
+        return repository;
+    }
+}
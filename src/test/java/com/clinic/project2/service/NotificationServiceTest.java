@@ -0,0 +1,385 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.JobShard;
+import com.clinic.project2.model.dto.ClientContactDto;
+import com.clinic.project2.model.dto.FilmNotificationDto;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.FilmRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationServiceTest {
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private FilmRepository filmRepository;
+
+    @Mock
+    private ClientRepository clientRepository;
+
+    @Mock
+    private SubscriptionIndex subscriptionIndex;
+
+    @Mock
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private JobShardService jobShardService;
+
+    @Mock
+    private NotificationLedger notificationLedger;
+
+    @InjectMocks
+    private NotificationService notificationService;
+
+    @Captor
+    private ArgumentCaptor<FilmNotificationDto> notificationCaptor;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(notificationService, "clientBatchSize", 2);
+        ReflectionTestUtils.setField(notificationService, "backpressurePollMs", 1L);
+        ReflectionTestUtils.setField(notificationService, "parallelism", 1);
+        ReflectionTestUtils.setField(emailService, "notificationLedger", notificationLedger);
+        lenient().when(emailService.sendNewFilmsNotifications(any(), any(), any())).thenCallRealMethod();
+        stubSingleShardRun();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubSingleShardRun() {
+        Deque<JobShard> pending = new ArrayDeque<>();
+        lenient().doAnswer(invocation -> {
+            IdRange ids = invocation.getArgument(2);
+            Collection<Long> runFilmIds = invocation.getArgument(4);
+            pending.add(JobShard.builder().id(1L).rangeAfter(ids.after()).rangeUpTo(ids.upTo())
+                    .runFilmIds(runFilmIds.stream().map(String::valueOf).collect(Collectors.joining(","))).build());
+            return null;
+        }).when(jobShardService).createShards(any(), any(), any(), anyInt(), any());
+        lenient().when(jobShardService.claim(any(), any())).thenAnswer(invocation -> pending.poll());
+        lenient().when(jobShardService.holds(any())).thenReturn(true);
+        lenient().when(jobShardService.checkpoint(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+        lenient().when(jobShardService.complete(any(), any(), any())).thenAnswer(invocation -> {
+            Collection<Long> notified = invocation.getArgument(1);
+            ((Consumer<Set<Long>>) invocation.getArgument(2)).accept(new HashSet<>(notified));
+            return true;
+        });
+    }
+
+    @Test
+    void testSendNotifications_ClientsScannedByKeyset_MatchedClientsNotified() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        ClientContactDto first = new ClientContactDto(1L, "first@gmail.com");
+        ClientContactDto second = new ClientContactDto(2L, "second@gmail.com");
+        ClientContactDto third = new ClientContactDto(5L, "third@gmail.com");
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(2L, List.of(film), 5L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(5L);
+        when(clientRepository.findActiveClientsInRange(0L, 5L, Limit.of(2))).thenReturn(List.of(first, second));
+        when(clientRepository.findActiveClientsInRange(2L, 5L, Limit.of(2))).thenReturn(List.of(third));
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(true);
+
+        notificationService.sendNotifications();
+
+        verify(emailService, times(2)).sendNewFilmsNotification(notificationCaptor.capture(), eq(Map.of(10L, film)), any());
+        List<FilmNotificationDto> notifications = notificationCaptor.getAllValues();
+        assertEquals(List.of("second@gmail.com", "third@gmail.com"), notifications.stream().map(FilmNotificationDto::getMail).toList());
+        assertEquals(List.of(10L), notifications.get(0).getFilmIds());
+        assertEquals(List.of(2L, 5L), notifications.stream().map(FilmNotificationDto::getClientId).toList());
+        verify(clientRepository).findMaxActiveId();
+        verify(clientRepository, times(2)).findActiveClientsInRange(any(), any(), any());
+        verifyNoMoreInteractions(clientRepository);
+        verify(filmRepository).markProcessed(Set.of(10L), LocalDate.now());
+    }
+
+    @Test
+    void testSendNotifications_RunCompleted_StageTimersAndMatchCounterRecorded() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(2L, List.of(film), 5L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(5L);
+        when(clientRepository.findActiveClientsInRange(0L, 5L, Limit.of(2)))
+                .thenReturn(List.of(new ClientContactDto(1L, "first@gmail.com"), new ClientContactDto(2L, "second@gmail.com")));
+        when(clientRepository.findActiveClientsInRange(2L, 5L, Limit.of(2)))
+                .thenReturn(List.of(new ClientContactDto(5L, "third@gmail.com")));
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(true);
+
+        notificationService.sendNotifications();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        notificationService.bindTo(registry);
+        assertEquals(1, registry.get("notification.run.stage").tag("stage", "film-query").functionTimer().count());
+        assertEquals(1, registry.get("notification.run.stage").tag("stage", "matching").functionTimer().count());
+        assertEquals(2, registry.get("notification.run.stage").tag("stage", "client-scan").functionTimer().count());
+        assertEquals(2, registry.get("notification.run.stage").tag("stage", "send").functionTimer().count());
+        assertEquals(2, registry.get("notification.matched.clients").functionCounter().count());
+    }
+
+    @Test
+    void testSendNotifications_ManyRecipients_QueriesDoNotGrowPerRecipient() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        List<ClientContactDto> clients = List.of(
+                new ClientContactDto(1L, "a@gmail.com"),
+                new ClientContactDto(2L, "b@gmail.com"),
+                new ClientContactDto(3L, "c@gmail.com"));
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(1L, List.of(film), 2L, List.of(film), 3L, List.of(film)));
+        ReflectionTestUtils.setField(notificationService, "clientBatchSize", 10);
+        when(clientRepository.findMaxActiveId()).thenReturn(3L);
+        when(clientRepository.findActiveClientsInRange(0L, 3L, Limit.of(10))).thenReturn(clients);
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(true);
+
+        notificationService.sendNotifications();
+
+        verify(emailService, times(3)).sendNewFilmsNotification(any(), any(), any());
+        verify(clientRepository, times(1)).findMaxActiveId();
+        verify(clientRepository, times(1)).findActiveClientsInRange(any(), any(), any());
+        verify(filmRepository, times(1)).findUnprocessedBooksAddedRecently(any());
+        verify(filmRepository, times(1)).markProcessed(Set.of(10L), LocalDate.now());
+        verifyNoMoreInteractions(clientRepository, filmRepository);
+    }
+
+    @Test
+    void testSendNotifications_NothingQueued_FilmNotMarkedProcessed() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        ClientContactDto client = new ClientContactDto(1L, "a@gmail.com");
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(1L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(1L);
+        when(clientRepository.findActiveClientsInRange(0L, 1L, Limit.of(2))).thenReturn(List.of(client));
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(false);
+
+        notificationService.sendNotifications();
+
+        verify(filmRepository, never()).markProcessed(any(), any());
+    }
+
+    @Test
+    void testSendNotifications_NoSubscribers_ClientsNotScanned() {
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of());
+        when(subscriptionIndex.match(List.of())).thenReturn(Map.of());
+
+        notificationService.sendNotifications();
+
+        verifyNoInteractions(clientRepository);
+        verify(emailService, never()).sendNewFilmsNotification(any(), any(), any());
+    }
+
+    @Test
+    void testSendNotifications_OutboxFull_WaitsForDeliveryBeforeQueueingBatch() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        ClientContactDto client = new ClientContactDto(1L, "a@gmail.com");
+        ReflectionTestUtils.setField(notificationService, "maxQueuedEmails", 100L);
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(1L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(1L);
+        when(clientRepository.findActiveClientsInRange(0L, 1L, Limit.of(2))).thenReturn(List.of(client));
+        when(emailOutboxService.countQueued()).thenReturn(150L, 120L, 99L);
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(true);
+
+        notificationService.sendNotifications();
+
+        InOrder inOrder = inOrder(emailOutboxService, emailService);
+        inOrder.verify(emailOutboxService, times(3)).countQueued();
+        inOrder.verify(emailService).sendNewFilmsNotifications(any(), any(), any());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        notificationService.bindTo(registry);
+        assertEquals(1, registry.get("notification.backpressure.wait").functionTimer().count());
+    }
+
+    @Test
+    void testSendNotifications_ParallelPartitions_SameNotificationsAsSequentialRun() {
+        List<Film> films = List.of(
+                Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build(),
+                Film.builder().id(11L).title("Hobbit").director("Peter Jackson").category("Fantasy").build());
+        List<ClientContactDto> clients = new ArrayList<>();
+        Map<Long, List<Film>> matches = new HashMap<>();
+        for (long id = 1; id <= 200; id += 3) {
+            clients.add(new ClientContactDto(id, "client" + id + "@gmail.com"));
+            if (id % 2 == 1) {
+                matches.put(id, id % 5 == 0 ? films : List.of(films.get((int) (id % 2))));
+            }
+        }
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(films);
+        when(subscriptionIndex.match(films)).thenReturn(matches);
+        when(clientRepository.findMaxActiveId()).thenReturn(199L);
+        when(clientRepository.findActiveClientsInRange(any(), any(), any())).thenAnswer(invocation -> {
+            long lastId = invocation.getArgument(0);
+            long upperId = invocation.getArgument(1);
+            Limit limit = invocation.getArgument(2);
+            return clients.stream()
+                    .filter(client -> client.getId() > lastId && client.getId() <= upperId)
+                    .limit(limit.max())
+                    .toList();
+        });
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(true);
+
+        Map<String, List<Long>> sequential = runAndCollectNotifications(1);
+        Map<String, List<Long>> parallel = runAndCollectNotifications(4);
+
+        assertEquals(matches.size(), sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    private Map<String, List<Long>> runAndCollectNotifications(int parallelism) {
+        clearInvocations(emailService);
+        ReflectionTestUtils.setField(notificationService, "parallelism", parallelism);
+
+        notificationService.sendNotifications();
+
+        ArgumentCaptor<FilmNotificationDto> captor = ArgumentCaptor.forClass(FilmNotificationDto.class);
+        verify(emailService, atLeastOnce()).sendNewFilmsNotification(captor.capture(), any(), any());
+        Map<String, List<Long>> notifications = new HashMap<>();
+        captor.getAllValues().forEach(notification ->
+                assertNull(notifications.put(notification.getMail(), notification.getFilmIds())));
+        return notifications;
+    }
+
+    @Test
+    void testSendNotifications_ShardLeaseLost_ShardNotCompleted() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        ClientContactDto client = new ClientContactDto(1L, "a@gmail.com");
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(1L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(1L);
+        when(clientRepository.findActiveClientsInRange(0L, 1L, Limit.of(2))).thenReturn(List.of(client));
+        when(jobShardService.holds(any())).thenReturn(false);
+
+        notificationService.sendNotifications();
+
+        verify(emailService, never()).sendNewFilmsNotification(any(), any(), any());
+        verify(jobShardService, never()).complete(any(), any(), any());
+        verify(filmRepository, never()).markProcessed(any(), any());
+    }
+
+    @Test
+    void testSendNotifications_FilmAddedAfterShardsCreatedWithLowerId_LeftForNextRun() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        Film later = Film.builder().id(9L).title("Hobbit").director("George Lucas").category("Fantasy").build();
+        ClientContactDto client = new ClientContactDto(1L, "a@gmail.com");
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film, later));
+        when(subscriptionIndex.match(List.of(film, later))).thenReturn(Map.of(1L, List.of(film, later)));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(1L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(1L);
+        when(clientRepository.findActiveClientsInRange(0L, 1L, Limit.of(2))).thenReturn(List.of(client));
+        when(jobShardService.claim(any(), any())).thenReturn(JobShard.builder().id(1L).rangeAfter(0L).rangeUpTo(1L)
+                .runFilmIds("10").build(), (JobShard) null);
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(true);
+
+        notificationService.sendNotifications();
+
+        verify(emailService).sendNewFilmsNotification(notificationCaptor.capture(), eq(Map.of(10L, film)), any());
+        assertEquals(List.of(10L), notificationCaptor.getValue().getFilmIds());
+        verify(filmRepository).markProcessed(Set.of(10L), LocalDate.now());
+    }
+
+    @Test
+    void testSendNotifications_ShardResumedFromCheckpoint_OnlyPendingRangesScanned() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        Film earlier = Film.builder().id(9L).title("Alien").director("Ridley Scott").category("Sci-Fi").build();
+        ClientContactDto client = new ClientContactDto(5L, "a@gmail.com");
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(earlier, film));
+        when(subscriptionIndex.match(List.of(earlier, film))).thenReturn(Map.of(5L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(8L);
+        when(clientRepository.findActiveClientsInRange(4L, 6L, Limit.of(2))).thenReturn(List.of(client));
+        when(jobShardService.claim(any(), any())).thenReturn(JobShard.builder().id(1L).rangeAfter(0L).rangeUpTo(8L)
+                .runFilmIds("9,10").pendingRanges("4:6").notifiedFilmIds("9").scannedClients(3L).notifiedClients(1L)
+                .build(), (JobShard) null);
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(true);
+
+        notificationService.sendNotifications();
+
+        verify(clientRepository).findActiveClientsInRange(4L, 6L, Limit.of(2));
+        verify(clientRepository, times(1)).findActiveClientsInRange(any(), any(), any());
+        verify(jobShardService).checkpoint(any(), eq(List.of()), eq(Set.of(9L, 10L)), eq(4L), eq(2L));
+        verify(filmRepository).markProcessed(Set.of(9L, 10L), LocalDate.now());
+    }
+
+    @Test
+    void testSendNotifications_CheckpointInterval_PendingRangesCheckpointedAfterEachPage() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        ClientContactDto first = new ClientContactDto(1L, "first@gmail.com");
+        ClientContactDto second = new ClientContactDto(2L, "second@gmail.com");
+        ClientContactDto third = new ClientContactDto(5L, "third@gmail.com");
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(2L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(5L);
+        when(clientRepository.findActiveClientsInRange(0L, 5L, Limit.of(2))).thenReturn(List.of(first, second));
+        when(clientRepository.findActiveClientsInRange(2L, 5L, Limit.of(2))).thenReturn(List.of(third));
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(true);
+        ReflectionTestUtils.setField(notificationService, "checkpointIntervalMs", 0L);
+
+        notificationService.sendNotifications();
+
+        InOrder inOrder = inOrder(jobShardService);
+        inOrder.verify(jobShardService).checkpoint(any(), eq(List.of(new IdRange(2, 5))), eq(Set.of(10L)), eq(2L), eq(1L));
+        inOrder.verify(jobShardService, times(2)).checkpoint(any(), eq(List.of()), eq(Set.of(10L)), eq(3L), eq(1L));
+        inOrder.verify(jobShardService).complete(any(), any(), any());
+    }
+
+    @Test
+    void testSendNotifications_LeaseLostAtCheckpoint_ShardNotCompleted() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        ClientContactDto client = new ClientContactDto(1L, "a@gmail.com");
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(1L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(1L);
+        when(clientRepository.findActiveClientsInRange(0L, 1L, Limit.of(2))).thenReturn(List.of(client));
+        when(emailService.sendNewFilmsNotification(any(), any(), any())).thenReturn(true);
+        when(jobShardService.checkpoint(any(), any(), any(), anyLong(), anyLong())).thenReturn(false);
+
+        notificationService.sendNotifications();
+
+        verify(jobShardService, never()).complete(any(), any(), any());
+        verify(filmRepository, never()).markProcessed(any(), any());
+    }
+
+    @Test
+    void testSendNotifications_MatcherFails_ShardReleased() {
+        Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+        when(filmRepository.findUnprocessedBooksAddedRecently(any())).thenReturn(List.of(film));
+        when(subscriptionIndex.match(List.of(film))).thenReturn(Map.of(1L, List.of(film)));
+        when(clientRepository.findMaxActiveId()).thenReturn(1L);
+        when(clientRepository.findActiveClientsInRange(0L, 1L, Limit.of(2)))
+                .thenThrow(new IllegalStateException("database down"));
+
+        assertThrows(CompletionException.class, () -> notificationService.sendNotifications());
+
+        verify(jobShardService).release(argThat(shard -> shard.getId() == 1L));
+        verify(jobShardService, never()).complete(any(), any(), any());
+        verify(filmRepository, never()).markProcessed(any(), any());
+    }
+}
@@ -0,0 +1,289 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.Project2Application;
+import com.clinic.project2.model.Client;
+import com.clinic.project2.model.EmailOutbox;
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.JobShard;
+import com.clinic.project2.model.JobShardStatus;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.EmailOutboxRepository;
+import com.clinic.project2.repository.FilmRepository;
+import com.clinic.project2.repository.JobShardRepository;
+import com.clinic.project2.repository.NotificationDeliveryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "notification.shards=4",
+        "notification.client-batch-size=3",
+        "email.outbox.poll-interval-ms=3600000"
+})
+class NotificationShardingIntegrationTest {
+
+    private static final int CLIENTS = 20;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private JobShardService jobShardService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private JobShardRepository jobShardRepository;
+
+    @Autowired
+    private NotificationDeliveryRepository notificationDeliveryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Film film;
+
+    @BeforeEach
+    void setUp() {
+        jobShardRepository.deleteAll();
+        notificationDeliveryRepository.deleteAll();
+        emailOutboxRepository.deleteAll();
+        clientRepository.deleteAll();
+        filmRepository.deleteAll();
+        for (int i = 0; i < CLIENTS; i++) {
+            clientRepository.save(Client.builder()
+                    .firstName("John")
+                    .lastName("Mark")
+                    .mail("client" + i + "@example.com")
+                    .password("password")
+                    .active(true)
+                    .subscriptionDirector(Set.of("George Lucas"))
+                    .subscriptionCategory(Set.of())
+                    .build());
+        }
+        film = filmRepository.save(Film.builder()
+                .title("Star Wars")
+                .director("George Lucas")
+                .category("Sci-Fi")
+                .createdDate(LocalDate.now())
+                .build());
+    }
+
+    @Test
+    void testSendNotifications_TwoNodesRunConcurrently_EachClientNotifiedOnce() throws Exception {
+        ConfigurableApplicationContext secondNode = new SpringApplicationBuilder(Project2Application.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "notification.shards=4",
+                        "notification.client-batch-size=3",
+                        "email.outbox.poll-interval-ms=3600000")
+                .run();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> runs = new ArrayList<>();
+            for (NotificationService node : List.of(notificationService, secondNode.getBean(NotificationService.class))) {
+                runs.add(executor.submit(() -> {
+                    start.await();
+                    node.sendNotifications();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> run : runs) {
+                run.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+            secondNode.close();
+        }
+
+        assertEachClientNotifiedOnce();
+        List<JobShard> shards = jobShardRepository.findAll();
+        assertEquals(4, shards.size());
+        assertTrue(shards.stream().allMatch(shard -> shard.getStatus() == JobShardStatus.DONE));
+        assertEquals(LocalDate.now(), filmRepository.findById(film.getId()).orElseThrow().getProcessedDate());
+    }
+
+    @Test
+    void testSendNotifications_ShardOfDeadNode_TakenOverAfterLeaseExpired() {
+        jobShardRepository.save(JobShard.builder()
+                .jobName(NotificationService.JOB_NAME)
+                .runDate(LocalDate.now())
+                .shardIndex(0)
+                .rangeAfter(0)
+                .rangeUpTo(clientRepository.findMaxActiveId())
+                .runFilmIds(String.valueOf(film.getId()))
+                .status(JobShardStatus.RUNNING)
+                .owner("dead-node")
+                .leaseUntil(LocalDateTime.now().minusMinutes(1))
+                .build());
+
+        notificationService.sendNotifications();
+
+        assertEachClientNotifiedOnce();
+        JobShard shard = jobShardRepository.findAll().get(0);
+        assertEquals(JobShardStatus.DONE, shard.getStatus());
+        assertEquals(jobShardService.getNodeId(), shard.getOwner());
+        assertEquals(LocalDate.now(), filmRepository.findById(film.getId()).orElseThrow().getProcessedDate());
+    }
+
+    @Test
+    void testSendNotifications_ShardResumedAfterCrash_DeliveredClientsNotNotifiedAgain() {
+        List<Long> clientIds = clientRepository.findAll().stream().map(Client::getId).sorted().toList();
+        List<Long> alreadyNotified = clientIds.subList(0, CLIENTS / 2);
+        notificationDeliveryRepository.insertAll(
+                alreadyNotified.stream().map(clientId -> new long[]{clientId, film.getId()}).toList(),
+                LocalDateTime.now().minusMinutes(5));
+        jobShardRepository.save(JobShard.builder()
+                .jobName(NotificationService.JOB_NAME)
+                .runDate(LocalDate.now())
+                .shardIndex(0)
+                .rangeAfter(0)
+                .rangeUpTo(clientRepository.findMaxActiveId())
+                .runFilmIds(String.valueOf(film.getId()))
+                .status(JobShardStatus.RUNNING)
+                .owner("crashed-node")
+                .leaseUntil(LocalDateTime.now().minusMinutes(1))
+                .build());
+
+        notificationService.sendNotifications();
+
+        Set<String> recipients = emailOutboxRepository.findAll().stream()
+                .map(EmailOutbox::getRecipient)
+                .collect(Collectors.toSet());
+        assertEquals(CLIENTS - alreadyNotified.size(), recipients.size());
+        assertEquals(CLIENTS, notificationDeliveryRepository.count());
+        assertEquals(LocalDate.now(), filmRepository.findById(film.getId()).orElseThrow().getProcessedDate());
+
+        Film reopened = filmRepository.findById(film.getId()).orElseThrow();
+        reopened.setProcessedDate(null);
+        filmRepository.save(reopened);
+        jobShardRepository.deleteAll();
+        notificationService.sendNotifications();
+        assertEquals(CLIENTS - alreadyNotified.size(), emailOutboxRepository.count());
+    }
+
+    @Test
+    void testSendNotifications_ShardRestartedFromCheckpoint_ScannedClientsSkipped() {
+        List<Long> clientIds = clientRepository.findAll().stream().map(Client::getId).sorted().toList();
+        long checkpointedUpTo = clientIds.get(CLIENTS / 2 - 1);
+        jobShardRepository.save(JobShard.builder()
+                .jobName(NotificationService.JOB_NAME)
+                .runDate(LocalDate.now())
+                .shardIndex(0)
+                .rangeAfter(0)
+                .rangeUpTo(clientRepository.findMaxActiveId())
+                .runFilmIds(String.valueOf(film.getId()))
+                .status(JobShardStatus.RUNNING)
+                .owner("restarted-node")
+                .leaseUntil(LocalDateTime.now().minusMinutes(1))
+                .pendingRanges(checkpointedUpTo + ":" + clientRepository.findMaxActiveId())
+                .notifiedFilmIds(String.valueOf(film.getId()))
+                .scannedClients(CLIENTS / 2)
+                .notifiedClients(CLIENTS / 2)
+                .startedAt(LocalDateTime.now().minusMinutes(5))
+                .build());
+
+        notificationService.sendNotifications();
+
+        assertEquals(CLIENTS - CLIENTS / 2, emailOutboxRepository.count());
+        JobShard shard = jobShardRepository.findAll().get(0);
+        assertEquals(JobShardStatus.DONE, shard.getStatus());
+        assertEquals(CLIENTS, shard.getScannedClients());
+        assertEquals(CLIENTS, shard.getNotifiedClients());
+        assertEquals(1.0, jobShardService.progress(NotificationService.JOB_NAME, LocalDate.now()).getProgress());
+        assertEquals(LocalDate.now(), filmRepository.findById(film.getId()).orElseThrow().getProcessedDate());
+    }
+
+    @Test
+    void testResumeUnfinishedRuns_RunOfEarlierDayHalfCheckpointed_ContinuedAfterRestart() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        List<Long> clientIds = clientRepository.findAll().stream().map(Client::getId).sorted().toList();
+        long checkpointedUpTo = clientIds.get(CLIENTS / 2 - 1);
+        jobShardRepository.save(JobShard.builder()
+                .jobName(NotificationService.JOB_NAME)
+                .runDate(yesterday)
+                .shardIndex(0)
+                .rangeAfter(0)
+                .rangeUpTo(clientRepository.findMaxActiveId())
+                .runFilmIds(String.valueOf(film.getId()))
+                .status(JobShardStatus.RUNNING)
+                .owner("node-before-restart")
+                .leaseUntil(LocalDateTime.now().minusMinutes(1))
+                .pendingRanges(checkpointedUpTo + ":" + clientRepository.findMaxActiveId())
+                .notifiedFilmIds(String.valueOf(film.getId()))
+                .scannedClients(CLIENTS / 2)
+                .notifiedClients(CLIENTS / 2)
+                .build());
+
+        notificationService.resumeUnfinishedRuns();
+
+        assertEquals(CLIENTS - CLIENTS / 2, emailOutboxRepository.count());
+        JobShard shard = jobShardRepository.findAll().get(0);
+        assertEquals(yesterday, shard.getRunDate());
+        assertEquals(JobShardStatus.DONE, shard.getStatus());
+        assertEquals(CLIENTS, shard.getScannedClients());
+        assertEquals(LocalDate.now(), filmRepository.findById(film.getId()).orElseThrow().getProcessedDate());
+        assertTrue(jobShardService.findUnfinishedRunDates(NotificationService.JOB_NAME, LocalDate.now()).isEmpty());
+    }
+
+    @Test
+    void testRelease_FailedShard_ClaimedByOtherNodeWithCheckpoint() {
+        jobShardService.createShards(NotificationService.JOB_NAME, LocalDate.now(),
+                new IdRange(0, clientRepository.findMaxActiveId()), 1, List.of(film.getId()));
+        JobShard failed = jobShardService.claim(NotificationService.JOB_NAME, LocalDate.now());
+        jobShardService.checkpoint(failed, List.of(new IdRange(5, failed.getRangeUpTo())), List.of(film.getId()), 5, 5);
+
+        jobShardService.release(failed);
+        JobShardService otherNode = otherNode();
+        JobShard claimed = transactionTemplate.execute(status ->
+                otherNode.claim(NotificationService.JOB_NAME, LocalDate.now()));
+
+        assertFalse(jobShardService.holds(failed.getId()));
+        assertNotNull(claimed);
+        assertEquals(failed.getId(), claimed.getId());
+        JobShard stored = jobShardRepository.findById(failed.getId()).orElseThrow();
+        assertEquals(otherNode.getNodeId(), stored.getOwner());
+        assertEquals("5:" + failed.getRangeUpTo(), stored.getPendingRanges());
+        assertEquals(5, stored.getScannedClients());
+    }
+
+    private JobShardService otherNode() {
+        return new JobShardService(jobShardRepository);
+    }
+
+    private void assertEachClientNotifiedOnce() {
+        Map<String, Long> emailsByRecipient = emailOutboxRepository.findAll().stream()
+                .collect(Collectors.groupingBy(EmailOutbox::getRecipient, Collectors.counting()));
+        assertEquals(CLIENTS, emailsByRecipient.size());
+        assertTrue(emailsByRecipient.values().stream().allMatch(count -> count == 1));
+    }
+}
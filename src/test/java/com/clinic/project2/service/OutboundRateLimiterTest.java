@@ -0,0 +1,67 @@
+package com.clinic.project2.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(0);
+    private final OutboundRateLimiter rateLimiter = new OutboundRateLimiter(now::get);
+
+    @Test
+    void testReserve_WithinBurst_NoWait() {
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, rateLimiter.reserve(1));
+        }
+    }
+
+    @Test
+    void testReserve_BurstExhausted_WaitGrowsWithDebt() {
+        rateLimiter.reserve(20);
+
+        assertEquals(SECOND / 10, rateLimiter.reserve(1));
+        assertEquals(2 * SECOND / 10, rateLimiter.reserve(1));
+    }
+
+    @Test
+    void testReserve_TimePasses_BucketRefillsUpToBurst() {
+        rateLimiter.reserve(20);
+        now.addAndGet(SECOND);
+
+        assertEquals(0, rateLimiter.reserve(10));
+        now.addAndGet(60 * SECOND);
+        assertEquals(0, rateLimiter.reserve(20));
+        assertEquals(SECOND / 10, rateLimiter.reserve(1));
+    }
+
+    @Test
+    void testReserve_RateDisabled_NeverWaits() {
+        ReflectionTestUtils.setField(rateLimiter, "messagesPerSecond", 0.0);
+
+        assertEquals(0, rateLimiter.reserve(1000));
+    }
+
+    @Test
+    void testAcquire_Throttled_WaitRecordedInMetrics() {
+        OutboundRateLimiter limiter = new OutboundRateLimiter();
+        ReflectionTestUtils.setField(limiter, "messagesPerSecond", 100.0);
+        ReflectionTestUtils.setField(limiter, "burst", 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+
+        limiter.acquire(1);
+        limiter.acquire(1);
+
+        assertEquals(1, registry.get("email.rate-limiter.wait").functionTimer().count());
+        assertTrue(registry.get("email.rate-limiter.wait").functionTimer().totalTime(TimeUnit.MILLISECONDS) > 0);
+    }
+}
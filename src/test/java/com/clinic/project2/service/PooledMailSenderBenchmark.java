@@ -0,0 +1,80 @@
+package com.clinic.project2.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares one SMTP connection per message with pooled connections against a local GreenMail server.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+class PooledMailSenderBenchmark {
+
+    private static final int MESSAGES = Integer.getInteger("benchmark.messages", 500);
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Test
+    void benchmarkConnectionPerMessageAgainstPooledConnections() throws Exception {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+
+        List<MimeMessage> perMessage = messages(mailSender);
+        long start = System.nanoTime();
+        for (MimeMessage message : perMessage) {
+            mailSender.send(message);
+        }
+        double perMessageRate = rate(start);
+
+        PooledMailSender pooledMailSender = new PooledMailSender(mailSender, unlimitedRateLimiter());
+        ReflectionTestUtils.setField(pooledMailSender, "messagesPerConnection", 100);
+        ReflectionTestUtils.setField(pooledMailSender, "maxConnectionAgeMs", 60000L);
+        List<MimeMessage> pooled = messages(mailSender);
+        start = System.nanoTime();
+        assertTrue(pooledMailSender.send(pooled).isEmpty());
+        double pooledRate = rate(start);
+        pooledMailSender.closeAll();
+
+        assertEquals(2 * MESSAGES, greenMail.getReceivedMessages().length);
+        System.out.printf("SMTP connection per message: %.0f messages/s%n", perMessageRate);
+        System.out.printf("Pooled SMTP connections:     %.0f messages/s%n", pooledRate);
+    }
+
+    private static double rate(long startNanos) {
+        return MESSAGES / ((System.nanoTime() - startNanos) / 1_000_000_000.0);
+    }
+
+    private static List<MimeMessage> messages(JavaMailSenderImpl mailSender) throws MessagingException {
+        List<MimeMessage> messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
+            helper.setFrom("cinema@localhost");
+            helper.setTo("client" + i + "@localhost");
+            helper.setSubject("New Films Available");
+            helper.setText("Title: Star Wars\nDirector: George Lucas\nCategory: Sci-Fi\n");
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static OutboundRateLimiter unlimitedRateLimiter() {
+        OutboundRateLimiter rateLimiter = new OutboundRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "messagesPerSecond", 0.0);
+        return rateLimiter;
+    }
+}
@@ -0,0 +1,110 @@
+package com.clinic.project2.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledMailSenderTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private JavaMailSenderImpl mailSender;
+
+    private PooledMailSender pooledMailSender;
+
+    @BeforeEach
+    void setUp() {
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        pooledMailSender = new PooledMailSender(mailSender, unlimitedRateLimiter());
+        ReflectionTestUtils.setField(pooledMailSender, "messagesPerConnection", 2);
+        ReflectionTestUtils.setField(pooledMailSender, "maxConnectionAgeMs", 60000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pooledMailSender.closeAll();
+    }
+
+    @Test
+    void testSend_MoreMessagesThanConnectionLimit_AllDelivered() throws Exception {
+        List<MimeMessage> messages = messages(5);
+
+        Map<MimeMessage, Exception> failures = pooledMailSender.send(messages);
+
+        assertTrue(failures.isEmpty());
+        assertEquals(5, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void testSend_ConnectionReusedAcrossCalls_AllDelivered() throws Exception {
+        ReflectionTestUtils.setField(pooledMailSender, "messagesPerConnection", 100);
+
+        assertTrue(pooledMailSender.send(messages(3)).isEmpty());
+        assertTrue(pooledMailSender.send(messages(3)).isEmpty());
+
+        assertEquals(6, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void testSend_MessagesDelivered_SmtpLatencyRecordedInHistogram() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        pooledMailSender.bindTo(registry);
+
+        assertTrue(pooledMailSender.send(messages(3)).isEmpty());
+
+        Timer smtpLatency = registry.get("email.smtp.send").timer();
+        assertEquals(3, smtpLatency.count());
+        assertTrue(smtpLatency.totalTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    void testSend_ServerUnavailable_AllMessagesReportedFailed() throws Exception {
+        mailSender.setPort(1);
+        List<MimeMessage> messages = messages(3);
+
+        Map<MimeMessage, Exception> failures = pooledMailSender.send(messages);
+
+        assertEquals(3, failures.size());
+        assertEquals(0, greenMail.getReceivedMessages().length);
+    }
+
+    private List<MimeMessage> messages(int count) throws MessagingException {
+        List<MimeMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
+            helper.setFrom("cinema@localhost");
+            helper.setTo("client" + i + "@localhost");
+            helper.setSubject("Subject " + i);
+            helper.setText("Body " + i);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static OutboundRateLimiter unlimitedRateLimiter() {
+        OutboundRateLimiter rateLimiter = new OutboundRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "messagesPerSecond", 0.0);
+        return rateLimiter;
+    }
+}
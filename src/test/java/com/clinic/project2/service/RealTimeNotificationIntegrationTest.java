@@ -0,0 +1,131 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.Client;
+import com.clinic.project2.model.EmailOutbox;
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.command.CreateFilmCommand;
+import com.clinic.project2.model.dto.FilmDto;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.EmailOutboxRepository;
+import com.clinic.project2.repository.FilmRepository;
+import com.clinic.project2.repository.JobShardRepository;
+import com.clinic.project2.repository.NotificationDeliveryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "notification.real-time=true",
+        "email.outbox.poll-interval-ms=3600000"
+})
+class RealTimeNotificationIntegrationTest {
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private FilmImportService filmImportService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private FilmRepository filmRepository;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private JobShardRepository jobShardRepository;
+
+    @Autowired
+    private NotificationDeliveryRepository notificationDeliveryRepository;
+
+    @BeforeEach
+    void clearDatabase() {
+        jobShardRepository.deleteAll();
+        notificationDeliveryRepository.deleteAll();
+        emailOutboxRepository.deleteAll();
+        clientRepository.deleteAll();
+        filmRepository.deleteAll();
+    }
+
+    @Test
+    void testSave_SubscribedClient_NotifiedWithoutWaitingForNightlyRunAndOnlyOnce() throws Exception {
+        clientRepository.save(Client.builder()
+                .firstName("John")
+                .lastName("Mark")
+                .mail("fan@example.com")
+                .password("password")
+                .active(true)
+                .subscriptionDirector(Set.of("George Lucas"))
+                .subscriptionCategory(Set.of())
+                .build());
+        FilmDto film = filmService.save(CreateFilmCommand.builder()
+                .title("Star Wars")
+                .director("George Lucas")
+                .category("Sci-Fi")
+                .build());
+
+        List<EmailOutbox> queued = awaitQueuedEmails();
+        assertEquals(1, queued.size());
+        assertEquals("fan@example.com", queued.get(0).getRecipient());
+        assertTrue(queued.get(0).getBody().contains("Star Wars"));
+        Film saved = filmRepository.findById(film.getId()).orElseThrow();
+        assertNull(saved.getProcessedDate());
+        assertEquals(1, notificationDeliveryRepository.count());
+
+        notificationService.sendNotifications();
+
+        assertEquals(1, emailOutboxRepository.count());
+        assertEquals(LocalDate.now(), filmRepository.findById(film.getId()).orElseThrow().getProcessedDate());
+    }
+
+    @Test
+    void testImportNdjson_SubscribedClient_NotifiedOnceForTheBatchAndNightlyRunMarksFilmsProcessed() throws Exception {
+        clientRepository.save(Client.builder()
+                .firstName("John")
+                .lastName("Mark")
+                .mail("fan@example.com")
+                .password("password")
+                .active(true)
+                .subscriptionDirector(Set.of("George Lucas"))
+                .subscriptionCategory(Set.of())
+                .build());
+
+        filmImportService.importNdjson(new StringReader(
+                "{\"title\":\"Star Wars\",\"director\":\"George Lucas\",\"category\":\"Sci-Fi\"}\n"
+                        + "{\"title\":\"Empire\",\"director\":\"George Lucas\",\"category\":\"Sci-Fi\"}\n"));
+
+        List<EmailOutbox> queued = awaitQueuedEmails();
+        assertEquals(1, queued.size());
+        assertTrue(queued.get(0).getBody().contains("Star Wars"));
+        assertTrue(queued.get(0).getBody().contains("Empire"));
+        assertEquals(2, notificationDeliveryRepository.count());
+
+        notificationService.sendNotifications();
+
+        assertEquals(1, emailOutboxRepository.count());
+        assertTrue(filmRepository.findAll().stream().allMatch(film -> LocalDate.now().equals(film.getProcessedDate())));
+    }
+
+    private List<EmailOutbox> awaitQueuedEmails() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<EmailOutbox> queued;
+        while ((queued = emailOutboxRepository.findAll()).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        return queued;
+    }
+}
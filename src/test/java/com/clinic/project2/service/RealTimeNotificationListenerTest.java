@@ -0,0 +1,120 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.dto.ClientContactDto;
+import com.clinic.project2.model.dto.FilmNotificationDto;
+import com.clinic.project2.model.event.FilmCreatedEvent;
+import com.clinic.project2.model.event.FilmsImportedEvent;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.FilmRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RealTimeNotificationListenerTest {
+
+    @Mock
+    private FilmRepository filmRepository;
+
+    @Mock
+    private ClientRepository clientRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @InjectMocks
+    private RealTimeNotificationListener listener;
+
+    @Captor
+    private ArgumentCaptor<List<FilmNotificationDto>> notificationsCaptor;
+
+    private final Film film = Film.builder().id(10L).title("Star Wars").director("George Lucas").category("Sci-Fi").build();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(listener, "clientBatchSize", 2);
+    }
+
+    @Test
+    void testOnFilmCreated_Subscribers_NotifiedInBatchesPagedBySubscriberId() {
+        when(filmRepository.findById(10L)).thenReturn(Optional.of(film));
+        when(clientRepository.findSubscriberIds("George Lucas", "Sci-Fi", 0L, 2)).thenReturn(List.of(1L, 2L));
+        when(clientRepository.findSubscriberIds("George Lucas", "Sci-Fi", 2L, 2)).thenReturn(List.of(4L, 5L));
+        when(clientRepository.findSubscriberIds("George Lucas", "Sci-Fi", 5L, 2)).thenReturn(List.of(7L));
+        when(clientRepository.findActiveClientsByIds(List.of(1L, 2L))).thenReturn(List.of(
+                new ClientContactDto(1L, "a@gmail.com"), new ClientContactDto(2L, "b@gmail.com")));
+        when(clientRepository.findActiveClientsByIds(List.of(4L, 5L))).thenReturn(List.of());
+        when(clientRepository.findActiveClientsByIds(List.of(7L))).thenReturn(List.of(
+                new ClientContactDto(7L, "c@gmail.com")));
+
+        listener.onFilmCreated(new FilmCreatedEvent(10L));
+
+        verify(emailService, times(2)).sendNewFilmsNotifications(notificationsCaptor.capture(),
+                eq(Map.of(10L, film)), any());
+        assertEquals(List.of("a@gmail.com", "b@gmail.com", "c@gmail.com"), notificationsCaptor.getAllValues().stream()
+                .flatMap(List::stream)
+                .map(FilmNotificationDto::getMail)
+                .toList());
+        verify(filmRepository, never()).markProcessed(any(), any());
+    }
+
+    @Test
+    void testOnFilmCreated_NoActiveSubscriber_NothingQueued() {
+        when(filmRepository.findById(10L)).thenReturn(Optional.of(film));
+        when(clientRepository.findSubscriberIds("George Lucas", "Sci-Fi", 0L, 2)).thenReturn(List.of(1L));
+        when(clientRepository.findActiveClientsByIds(List.of(1L))).thenReturn(List.of());
+
+        listener.onFilmCreated(new FilmCreatedEvent(10L));
+
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    void testOnFilmsImported_ClientSubscribedToSeveralFilms_NotifiedOnceWithAllOfThem() {
+        Film sequel = Film.builder().id(11L).title("Empire").director("George Lucas").category("Drama").build();
+        Film processed = Film.builder().id(12L).title("Jedi").director("George Lucas").category("Sci-Fi")
+                .processedDate(LocalDate.now()).build();
+        when(filmRepository.findAllById(List.of(10L, 11L, 12L))).thenReturn(List.of(sequel, film, processed));
+        when(clientRepository.findSubscriberIds("George Lucas", "Sci-Fi", 0L, 2)).thenReturn(List.of(1L, 2L));
+        when(clientRepository.findSubscriberIds("George Lucas", "Sci-Fi", 2L, 2)).thenReturn(List.of());
+        when(clientRepository.findSubscriberIds("George Lucas", "Drama", 0L, 2)).thenReturn(List.of(1L, 3L));
+        when(clientRepository.findSubscriberIds("George Lucas", "Drama", 3L, 2)).thenReturn(List.of());
+        when(clientRepository.findActiveClientsByIds(List.of(1L, 2L))).thenReturn(List.of(
+                new ClientContactDto(1L, "a@gmail.com"), new ClientContactDto(2L, "b@gmail.com")));
+        when(clientRepository.findActiveClientsByIds(List.of(3L))).thenReturn(List.of());
+
+        listener.onFilmsImported(new FilmsImportedEvent(List.of(10L, 11L, 12L)));
+
+        verify(emailService).sendNewFilmsNotifications(notificationsCaptor.capture(),
+                eq(Map.of(10L, film, 11L, sequel)), any());
+        assertEquals(List.of(List.of(10L, 11L), List.of(10L)), notificationsCaptor.getValue().stream()
+                .map(FilmNotificationDto::getFilmIds)
+                .toList());
+    }
+
+    @Test
+    void testOnFilmCreated_AlreadyProcessed_NothingQueued() {
+        film.setProcessedDate(LocalDate.now());
+        when(filmRepository.findById(10L)).thenReturn(Optional.of(film));
+
+        listener.onFilmCreated(new FilmCreatedEvent(10L));
+
+        verifyNoInteractions(clientRepository, emailService);
+    }
+}
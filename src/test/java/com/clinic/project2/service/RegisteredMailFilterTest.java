@@ -0,0 +1,46 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.repository.ClientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RegisteredMailFilterTest {
+
+    private final ClientRepository clientRepository = mock(ClientRepository.class);
+    private final RegisteredMailFilter registeredMailFilter = new RegisteredMailFilter(clientRepository);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(registeredMailFilter, "expectedInsertions", 10_000L);
+        registeredMailFilter.init();
+    }
+
+    @Test
+    void testWarmUp_RegisteredMails_AlwaysReported() {
+        when(clientRepository.streamAllMails()).thenReturn(Stream.of("john.mark@gmil.com", "anna@example.com"));
+
+        registeredMailFilter.warmUp();
+
+        assertTrue(registeredMailFilter.mightContain("john.mark@gmil.com"));
+        assertTrue(registeredMailFilter.mightContain(" Anna@Example.com"));
+    }
+
+    @Test
+    void testMightContain_UnknownMails_FalsePositiveRateNearConfigured() {
+        IntStream.range(0, 10_000).forEach(i -> registeredMailFilter.put("client" + i + "@example.com"));
+
+        long falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> registeredMailFilter.mightContain("stranger" + i + "@example.com"))
+                .count();
+
+        assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,154 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.DictionaryTerm;
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.TermKind;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.DictionaryTermRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares the heap held by the former string-keyed index of {@code Set<Long>} with the dictionary-encoded
+ * bitmap index, and the time both take to match a day of films. Run with {@code mvn test -Pbenchmark}.
+ */
+class SubscriptionIndexFootprintBenchmark {
+
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 200_000);
+    private static final int DIRECTORS = 2_000;
+    private static final int CATEGORIES = 40;
+    private static final int DIRECTORS_PER_CLIENT = 3;
+
+    @Test
+    void benchmarkStringSetIndexAgainstBitmapIndex() {
+        Random random = new Random(42);
+        List<Set<String>> directorsByClient = new ArrayList<>();
+        List<String> categoryByClient = new ArrayList<>();
+        for (int client = 0; client < CLIENTS; client++) {
+            Set<String> directors = new HashSet<>();
+            for (int i = 0; i < DIRECTORS_PER_CLIENT; i++) {
+                directors.add("Director " + random.nextInt(DIRECTORS));
+            }
+            directorsByClient.add(directors);
+            categoryByClient.add("Category " + random.nextInt(CATEGORIES));
+        }
+        List<Film> films = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            films.add(Film.builder().id(id).director("Director " + random.nextInt(DIRECTORS))
+                    .category("Category " + random.nextInt(CATEGORIES)).build());
+        }
+
+        Supplier<StringSetIndex> stringSetIndex = () -> {
+            StringSetIndex index = new StringSetIndex();
+            for (int client = 0; client < CLIENTS; client++) {
+                index.subscribe(client + 1L, directorsByClient.get(client), categoryByClient.get(client));
+            }
+            return index;
+        };
+        Supplier<SubscriptionIndex> bitmapIndex = () -> {
+            SubscriptionIndex index = new SubscriptionIndex(mock(ClientRepository.class),
+                    new TermDictionary(dictionaryRepository()));
+            for (int client = 0; client < CLIENTS; client++) {
+                index.subscribe(client + 1L, directorsByClient.get(client), Set.of(categoryByClient.get(client)));
+            }
+            return index;
+        };
+        long stringSetBytes = retainedBytes(stringSetIndex);
+        long bitmapBytes = retainedBytes(bitmapIndex);
+
+        StringSetIndex strings = stringSetIndex.get();
+        long start = System.nanoTime();
+        Map<Long, List<Film>> stringSetMatches = strings.match(films);
+        double stringSetMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        SubscriptionIndex bitmaps = bitmapIndex.get();
+        start = System.nanoTime();
+        Map<Long, List<Film>> bitmapMatches = bitmaps.match(films);
+        double bitmapMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        assertEquals(stringSetMatches, bitmapMatches);
+        System.out.printf("String-keyed Set<Long> index: %,d bytes on heap, %.1f ms to match %d films%n",
+                stringSetBytes, stringSetMillis, films.size());
+        System.out.printf("Dictionary + bitmap index:    %,d bytes on heap (%,d in bitmaps), %.1f ms to match %d films%n",
+                bitmapBytes, bitmaps.bitmapSizeInBytes(), bitmapMillis, films.size());
+    }
+
+    private static long retainedBytes(Supplier<?> builder) {
+        long before = usedHeap();
+        Object built = builder.get();
+        long retained = usedHeap() - before;
+        Reference.reachabilityFence(built);
+        return retained;
+    }
+
+    private static DictionaryTermRepository dictionaryRepository() {
+        DictionaryTermRepository repository = mock(DictionaryTermRepository.class);
+        AtomicInteger nextTermId = new AtomicInteger();
+        Map<String, DictionaryTerm> terms = new HashMap<>();
+        when(repository.findByKindAndName(any(), any())).thenAnswer(invocation -> {
+            TermKind kind = invocation.getArgument(0);
+            String name = invocation.getArgument(1);
+            return Optional.of(terms.computeIfAbsent(kind + ":" + name, key -> DictionaryTerm.builder()
+                    .id(nextTermId.incrementAndGet()).kind(kind).name(name).build()));
+        });
+        return repository;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The index as it was before the dictionary: directors and categories as strings, clients as boxed ids.
+     */
+    private static final class StringSetIndex {
+
+        private final Map<String, Set<Long>> clientsByDirector = new ConcurrentHashMap<>();
+        private final Map<String, Set<Long>> clientsByCategory = new ConcurrentHashMap<>();
+
+        void subscribe(Long clientId, Set<String> directors, String category) {
+            for (String director : directors) {
+                clientsByDirector.computeIfAbsent(director, d -> ConcurrentHashMap.newKeySet()).add(clientId);
+            }
+            clientsByCategory.computeIfAbsent(category, c -> ConcurrentHashMap.newKeySet()).add(clientId);
+        }
+
+        Map<Long, List<Film>> match(List<Film> films) {
+            Map<Long, List<Film>> filmsByClient = new HashMap<>();
+            for (Film film : films) {
+                Set<Long> subscribers = new HashSet<>(clientsByDirector.getOrDefault(film.getDirector(), Set.of()));
+                subscribers.addAll(clientsByCategory.getOrDefault(film.getCategory(), Set.of()));
+                for (Long clientId : subscribers) {
+                    filmsByClient.computeIfAbsent(clientId, c -> new ArrayList<>()).add(film);
+                }
+            }
+            return filmsByClient;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.DictionaryTerm;
+import com.clinic.project2.model.Film;
+import com.clinic.project2.model.TermKind;
+import com.clinic.project2.model.projection.SubscriptionEntry;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.DictionaryTermRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SubscriptionIndexTest {
+
+    @Mock
+    private ClientRepository clientRepository;
+
+    @Mock
+    private DictionaryTermRepository dictionaryTermRepository;
+
+    private SubscriptionIndex subscriptionIndex;
+
+    @BeforeEach
+    void setUp() {
+        AtomicInteger nextTermId = new AtomicInteger(100);
+        lenient().when(dictionaryTermRepository.findByKindAndName(any(), any())).thenAnswer(invocation ->
+                Optional.of(term(nextTermId.incrementAndGet(), invocation.getArgument(0), invocation.getArgument(1))));
+        subscriptionIndex = new SubscriptionIndex(clientRepository, new TermDictionary(dictionaryTermRepository));
+    }
+
+    @Test
+    void testRebuild_SubscriptionsLoaded_ClientsMatchedByDirectorOrCategory() {
+        when(dictionaryTermRepository.findAll()).thenReturn(List.of(
+                term(1, TermKind.DIRECTOR, "George Lucas"),
+                term(2, TermKind.CATEGORY, "Fantasy"),
+                term(3, TermKind.CATEGORY, "Sci-Fi")));
+        when(clientRepository.findAllDirectorSubscriptions()).thenReturn(List.of(entry(1L, 1)));
+        when(clientRepository.findAllCategorySubscriptions()).thenReturn(List.of(entry(2L, 2), entry(1L, 2)));
+        Film starWars = Film.builder().id(10L).director("George Lucas").category("Sci-Fi").build();
+        Film hobbit = Film.builder().id(11L).director("Peter Jackson").category("Fantasy").build();
+        Film drama = Film.builder().id(12L).director("Someone").category("Drama").build();
+
+        subscriptionIndex.rebuild();
+        Map<Long, List<Film>> result = subscriptionIndex.match(List.of(starWars, hobbit, drama));
+
+        assertEquals(2, result.size());
+        assertEquals(List.of(starWars, hobbit), result.get(1L));
+        assertEquals(List.of(hobbit), result.get(2L));
+    }
+
+    @Test
+    void testSubscribeAndUnsubscribe_IndexKeptCurrent() {
+        Film film = Film.builder().id(10L).director("George Lucas").category("Sci-Fi").build();
+
+        subscriptionIndex.subscribe(1L, Set.of("George Lucas"), Set.of("Sci-Fi"));
+        subscriptionIndex.subscribe(2L, null, Set.of("Sci-Fi"));
+        assertEquals(Set.of(1L, 2L), subscriptionIndex.findSubscribers(film));
+
+        subscriptionIndex.unsubscribe(1L, null, Set.of("Sci-Fi"));
+        assertEquals(Set.of(1L, 2L), subscriptionIndex.findSubscribers(film));
+
+        subscriptionIndex.unsubscribe(1L, Set.of("George Lucas"), null);
+        assertEquals(Set.of(2L), subscriptionIndex.findSubscribers(film));
+    }
+
+    @Test
+    void testSubscribe_SameCategoryNameAsDirector_KeptApart() {
+        subscriptionIndex.subscribe(1L, Set.of("Drama"), null);
+
+        assertTrue(subscriptionIndex.findSubscribers(Film.builder().director("Someone").category("Drama").build()).isEmpty());
+        assertEquals(Set.of(1L), subscriptionIndex.findSubscribers(Film.builder().director("Drama").build()));
+    }
+
+    @Test
+    void testFindSubscribers_FilmWithoutDirectorAndCategory_NoSubscribers() {
+        subscriptionIndex.subscribe(1L, Set.of("George Lucas"), Set.of("Sci-Fi"));
+
+        assertTrue(subscriptionIndex.findSubscribers(Film.builder().title("Untitled").build()).isEmpty());
+    }
+
+    @Test
+    void testUnsubscribe_UnknownTerm_IndexUnchanged() {
+        subscriptionIndex.subscribe(1L, Set.of("George Lucas"), null);
+
+        subscriptionIndex.unsubscribe(1L, Set.of("Peter Jackson"), Set.of("Fantasy"));
+
+        assertEquals(Set.of(1L), subscriptionIndex.findSubscribers(Film.builder().director("George Lucas").build()));
+    }
+
+    @Test
+    void testSubscribe_InTransaction_IndexUpdatedOnlyAfterCommit() {
+        Film starWars = Film.builder().director("George Lucas").build();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            subscriptionIndex.subscribe(1L, Set.of("George Lucas"), Set.of());
+
+            assertTrue(subscriptionIndex.findSubscribers(starWars).isEmpty());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(Set.of(1L), subscriptionIndex.findSubscribers(starWars));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testUnsubscribe_TransactionRolledBack_IndexUnchanged() {
+        Film starWars = Film.builder().director("George Lucas").build();
+        subscriptionIndex.subscribe(1L, Set.of("George Lucas"), Set.of());
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            subscriptionIndex.unsubscribe(1L, Set.of("George Lucas"), Set.of());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                    synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            assertEquals(Set.of(1L), subscriptionIndex.findSubscribers(starWars));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testRebuild_SubscriptionChangedWhileLoading_ChangeKeptAfterSwap() {
+        Film starWars = Film.builder().director("George Lucas").build();
+        when(dictionaryTermRepository.findAll()).thenReturn(List.of(term(1, TermKind.DIRECTOR, "George Lucas")));
+        when(clientRepository.findAllDirectorSubscriptions()).thenAnswer(invocation -> {
+            subscriptionIndex.subscribe(2L, Set.of("George Lucas"), Set.of());
+            subscriptionIndex.unsubscribe(1L, Set.of("George Lucas"), Set.of());
+            return List.of(entry(1L, 1));
+        });
+
+        subscriptionIndex.rebuild();
+
+        assertEquals(Set.of(2L), subscriptionIndex.findSubscribers(starWars));
+    }
+
+    @Test
+    void testSubscribe_ClientIdAboveIntRange_Matched() {
+        long clientId = Integer.MAX_VALUE + 10L;
+
+        subscriptionIndex.subscribe(clientId, Set.of("George Lucas"), Set.of());
+
+        assertEquals(Set.of(clientId), subscriptionIndex.findSubscribers(Film.builder().director("George Lucas").build()));
+    }
+
+    @Test
+    void testSubscribe_ClientIdBeyondIndexRange_Rejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> subscriptionIndex.subscribe(1L << 32, Set.of("George Lucas"), Set.of()));
+
+        assertTrue(e.getMessage().contains(String.valueOf(1L << 32)));
+    }
+
+    private static DictionaryTerm term(int id, TermKind kind, String name) {
+        return DictionaryTerm.builder().id(id).kind(kind).name(name).build();
+    }
+
+    private static SubscriptionEntry entry(Long clientId, Integer termId) {
+        return new SubscriptionEntry() {
+            @Override
+            public Long getClientId() {
+                return clientId;
+            }
+
+            @Override
+            public Integer getTermId() {
+                return termId;
+            }
+        };
+    }
+}
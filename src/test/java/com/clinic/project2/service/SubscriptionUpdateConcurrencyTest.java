@@ -0,0 +1,72 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.Client;
+import com.clinic.project2.model.command.CreateSubscriptionCommand;
+import com.clinic.project2.repository.ClientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SubscriptionUpdateConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void clearDatabase() {
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void testAddFilmSubscription_SameClientUpdatedConcurrently_NoSubscriptionLost() throws Exception {
+        Long clientId = clientRepository.save(Client.builder().mail("fan@example.com").active(true).build()).getId();
+        Set<String> expected = new HashSet<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String director = "Director " + i;
+            expected.add(director);
+            futures.add(executor.submit(() -> {
+                start.await();
+                clientService.addFilmSubscription(clientId, CreateSubscriptionCommand.builder()
+                        .directors(Set.of(director, "Shared Director"))
+                        .build());
+                return null;
+            }));
+        }
+        expected.add("Shared Director");
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(expected, transactionTemplate.execute(status ->
+                new HashSet<>(clientRepository.findById(clientId).orElseThrow().getSubscriptionDirector())));
+    }
+}
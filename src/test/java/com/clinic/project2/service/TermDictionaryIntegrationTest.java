@@ -0,0 +1,44 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.DictionaryTerm;
+import com.clinic.project2.model.TermKind;
+import com.clinic.project2.repository.DictionaryTermRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class TermDictionaryIntegrationTest {
+
+    private static final String DIRECTOR = "Registered Elsewhere";
+
+    @Autowired
+    private TermDictionary termDictionary;
+
+    @Autowired
+    private DictionaryTermRepository dictionaryTermRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void clearDatabase() {
+        dictionaryTermRepository.findByKindAndName(TermKind.DIRECTOR, DIRECTOR)
+                .ifPresent(dictionaryTermRepository::delete);
+    }
+
+    @Test
+    void testRegister_StoredByOtherNode_ExistingIdUsedAndCallerTransactionCommits() {
+        int existingId = dictionaryTermRepository.save(
+                DictionaryTerm.builder().kind(TermKind.DIRECTOR).name(DIRECTOR).build()).getId();
+
+        Integer registeredId = transactionTemplate.execute(status ->
+                termDictionary.register(TermKind.DIRECTOR, DIRECTOR));
+
+        assertEquals(existingId, registeredId);
+    }
+}
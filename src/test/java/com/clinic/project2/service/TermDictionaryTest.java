@@ -0,0 +1,63 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.DictionaryTerm;
+import com.clinic.project2.model.TermKind;
+import com.clinic.project2.repository.DictionaryTermRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TermDictionaryTest {
+
+    @Mock
+    private DictionaryTermRepository dictionaryTermRepository;
+
+    @InjectMocks
+    private TermDictionary termDictionary;
+
+    @Test
+    void testMigrate_TextTermsImported_ThenLoaded() {
+        when(dictionaryTermRepository.importDirectors()).thenReturn(1);
+        when(dictionaryTermRepository.importCategories()).thenReturn(1);
+        when(dictionaryTermRepository.findAll()).thenReturn(List.of(
+                DictionaryTerm.builder().id(1).kind(TermKind.DIRECTOR).name("George Lucas").build(),
+                DictionaryTerm.builder().id(2).kind(TermKind.CATEGORY).name("Sci-Fi").build()));
+
+        termDictionary.migrate();
+
+        assertEquals(1, termDictionary.find(TermKind.DIRECTOR, "George Lucas"));
+        assertEquals(2, termDictionary.find(TermKind.CATEGORY, "Sci-Fi"));
+        assertNull(termDictionary.find(TermKind.CATEGORY, "George Lucas"));
+        assertEquals(2, termDictionary.size());
+    }
+
+    @Test
+    void testRegister_KnownTerm_NotStoredAgain() {
+        when(dictionaryTermRepository.findByKindAndName(TermKind.DIRECTOR, "George Lucas")).thenReturn(
+                Optional.of(DictionaryTerm.builder().id(7).kind(TermKind.DIRECTOR).name("George Lucas").build()));
+
+        assertEquals(7, termDictionary.register(TermKind.DIRECTOR, "George Lucas"));
+        assertEquals(7, termDictionary.register(TermKind.DIRECTOR, "George Lucas"));
+
+        verify(dictionaryTermRepository, times(1)).insertIgnore("DIRECTOR", "George Lucas");
+    }
+
+    @Test
+    void testRegister_RegisteredConcurrentlyByOtherNode_ExistingIdUsed() {
+        when(dictionaryTermRepository.insertIgnore("CATEGORY", "Drama")).thenReturn(0);
+        when(dictionaryTermRepository.findByKindAndName(TermKind.CATEGORY, "Drama")).thenReturn(
+                Optional.of(DictionaryTerm.builder().id(9).kind(TermKind.CATEGORY).name("Drama").build()));
+
+        assertEquals(9, termDictionary.register(TermKind.CATEGORY, "Drama"));
+        assertEquals(9, termDictionary.find(TermKind.CATEGORY, "Drama"));
+    }
+}
@@ -0,0 +1,111 @@
+package com.clinic.project2.service;
+
+import com.clinic.project2.model.VerificationToken;
+import com.clinic.project2.repository.ClientRepository;
+import com.clinic.project2.repository.VerificationTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VerificationTokenServiceTest {
+
+    @Mock
+    private VerificationTokenRepository verificationTokenRepository;
+    @Mock
+    private ClientRepository clientRepository;
+    @InjectMocks
+    private VerificationTokenService verificationTokenService;
+    @Captor
+    private ArgumentCaptor<VerificationToken> tokenCaptor;
+
+    @Test
+    void testIssue_NewToken_OnlyHashStoredWithExpiry() {
+        String token = verificationTokenService.issue(7L);
+
+        verify(verificationTokenRepository).save(tokenCaptor.capture());
+        VerificationToken stored = tokenCaptor.getValue();
+        assertNotEquals(token, stored.getTokenHash());
+        assertEquals(VerificationTokenService.hash(token), stored.getTokenHash());
+        assertEquals(7L, stored.getClientId());
+        assertTrue(stored.getExpiresAt().isAfter(LocalDateTime.now().plusHours(47)));
+    }
+
+    @Test
+    void testConsume_IssuedToken_ServedFromMemoryAndDeleted() {
+        String token = verificationTokenService.issue(7L);
+        when(verificationTokenRepository.deleteByTokenHash(VerificationTokenService.hash(token))).thenReturn(1);
+
+        assertEquals(Optional.of(7L), verificationTokenService.consume(token));
+        verify(verificationTokenRepository, never()).findByTokenHash(anyString());
+        assertEquals(0, verificationTokenService.pendingCount());
+    }
+
+    @Test
+    void testConsume_TokenOfOtherInstance_LookedUpByHash() {
+        String hash = VerificationTokenService.hash("token");
+        when(verificationTokenRepository.findByTokenHash(hash)).thenReturn(Optional.of(VerificationToken.builder()
+                .tokenHash(hash)
+                .clientId(3L)
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build()));
+        when(verificationTokenRepository.deleteByTokenHash(hash)).thenReturn(1);
+
+        assertEquals(Optional.of(3L), verificationTokenService.consume("token"));
+    }
+
+    @Test
+    void testConsume_ExpiredToken_RejectedAndLeftForPurge() {
+        String hash = VerificationTokenService.hash("token");
+        when(verificationTokenRepository.findByTokenHash(hash)).thenReturn(Optional.of(VerificationToken.builder()
+                .tokenHash(hash)
+                .clientId(3L)
+                .expiresAt(LocalDateTime.now().minusMinutes(1))
+                .build()));
+
+        assertEquals(Optional.empty(), verificationTokenService.consume("token"));
+        verify(verificationTokenRepository, never()).deleteByTokenHash(anyString());
+    }
+
+    @Test
+    void testConsume_TokenUsedConcurrently_RejectedForSecondCaller() {
+        String hash = VerificationTokenService.hash("token");
+        when(verificationTokenRepository.findByTokenHash(hash)).thenReturn(Optional.of(VerificationToken.builder()
+                .tokenHash(hash)
+                .clientId(3L)
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build()));
+        when(verificationTokenRepository.deleteByTokenHash(hash)).thenReturn(0);
+
+        assertEquals(Optional.empty(), verificationTokenService.consume("token"));
+    }
+
+    @Test
+    void testPurgeExpired_ExpiredTokens_InactiveClientsDeletedWithTokens() {
+        List<VerificationToken> expired = List.of(
+                VerificationToken.builder().id(1L).clientId(10L).build(),
+                VerificationToken.builder().id(2L).clientId(11L).build());
+        when(verificationTokenRepository.findExpired(any(LocalDateTime.class), eq(Limit.of(100)))).thenReturn(expired);
+        when(clientRepository.findInactiveIds(List.of(10L, 11L))).thenReturn(List.of(11L));
+        when(verificationTokenRepository.deleteByIds(List.of(1L, 2L))).thenReturn(2);
+
+        assertEquals(2, verificationTokenService.purgeExpired(100));
+        verify(clientRepository).deleteDirectorSubscriptions(List.of(11L));
+        verify(clientRepository).deleteCategorySubscriptions(List.of(11L));
+        verify(clientRepository).deleteAllByIdInBatch(List.of(11L));
+    }
+}